@@ -3,6 +3,17 @@ let stompClient = null;
 let currentUser = null;
 let currentRoom = null;
 let rooms = [];
+let historyCursor = null;
+let loadingHistory = false;
+// Usernames the server has defined for compact frames on the current connection
+let knownUsers = new Map();
+let participantCount = 0;
+let onlineCount = 0;
+// Highest room sequence number shown; reconnects resume from here
+let lastSeq = null;
+// While history is loading, live messages wait here so none are shown twice or out of order
+let catchingUp = false;
+let pendingMessages = [];
 
 // API Base URL - Update this to your actual backend URL when deployed
 // Replace 'your-backend-url.com' with your actual deployed backend URL (Railway, Render, Heroku, etc.)
@@ -347,6 +358,9 @@ async function selectRoom(room) {
 
         if (response.ok) {
             currentRoom = room;
+            lastSeq = null;
+            catchingUp = true;
+            pendingMessages = [];
 
             // Update UI
             document.getElementById('no-room-selected').style.display = 'none';
@@ -394,6 +408,8 @@ async function leaveRoom() {
 
             // Reset UI
             currentRoom = null;
+            historyCursor = null;
+            lastSeq = null;
             document.getElementById('no-room-selected').style.display = 'flex';
             document.getElementById('chat-room').style.display = 'none';
             document.getElementById('messages').innerHTML = '';
@@ -492,18 +508,122 @@ async function loadMessages() {
     if (!currentRoom) return;
 
     try {
-        const response = await fetch(`${API_BASE}/messages/room/${currentRoom.id}?page=0&size=50`, {
+        const response = await fetch(`${API_BASE}/messages/room/${currentRoom.id}/history?limit=50`, {
             headers: {
                 'Authorization': `Bearer ${localStorage.getItem('token')}`
             }
         });
 
         if (response.ok) {
-            const messages = await response.json();
-            displayMessages(messages.reverse()); // Show oldest first
+            const history = await response.json();
+            historyCursor = history.nextCursor;
+            displayMessages(history.messages.reverse()); // Show oldest first
+            history.messages.forEach(updateLastSeq);
+
+            // The scrolling element is the container around the message list
+            document.getElementById('messages').parentElement.onscroll = function () {
+                if (this.scrollTop === 0) {
+                    loadOlderMessages();
+                }
+            };
         }
     } catch (error) {
         console.error('Error loading messages:', error);
+    } finally {
+        finishCatchingUp();
+    }
+}
+
+// Fetches what the room published after lastSeq, page by page, instead of reloading history
+async function resumeMessages() {
+    if (!currentRoom || catchingUp) return;
+
+    catchingUp = true;
+    const roomId = currentRoom.id;
+    try {
+        while (currentRoom && currentRoom.id === roomId) {
+            const response = await fetch(`${API_BASE}/messages/room/${roomId}/resume?after=${lastSeq}&limit=100`, {
+                headers: {
+                    'Authorization': `Bearer ${localStorage.getItem('token')}`
+                }
+            });
+            if (!response.ok) break;
+
+            const messages = await response.json();
+            messages.forEach(appendMessage);
+            if (messages.length < 100) break;
+        }
+    } catch (error) {
+        console.error('Error resuming messages:', error);
+    } finally {
+        finishCatchingUp();
+    }
+}
+
+function finishCatchingUp() {
+    catchingUp = false;
+    const pending = pendingMessages;
+    pendingMessages = [];
+    pending.forEach(appendMessage);
+}
+
+function receiveMessage(message) {
+    if (catchingUp) {
+        pendingMessages.push(message);
+        return;
+    }
+    if (message.seq != null && lastSeq !== null && message.seq > lastSeq + 1) {
+        // Something was missed on this connection; fetch it before showing newer messages
+        pendingMessages.push(message);
+        resumeMessages();
+        return;
+    }
+    appendMessage(message);
+}
+
+// Shows a message unless its sequence number says it is already on screen
+function appendMessage(message) {
+    if (message.seq != null && lastSeq !== null && message.seq <= lastSeq) return;
+
+    document.getElementById('messages').appendChild(createMessageElement(message));
+    updateLastSeq(message);
+}
+
+function updateLastSeq(message) {
+    if (message.seq != null && (lastSeq === null || message.seq > lastSeq)) {
+        lastSeq = message.seq;
+    }
+}
+
+async function loadOlderMessages() {
+    if (!currentRoom || !historyCursor || loadingHistory) return;
+
+    loadingHistory = true;
+    try {
+        const response = await fetch(`${API_BASE}/messages/room/${currentRoom.id}/history?before=${encodeURIComponent(historyCursor)}&limit=50`, {
+            headers: {
+                'Authorization': `Bearer ${localStorage.getItem('token')}`
+            }
+        });
+
+        if (response.ok) {
+            const history = await response.json();
+            historyCursor = history.nextCursor;
+
+            const messagesElement = document.getElementById('messages');
+            const scrollContainer = messagesElement.parentElement;
+            const previousHeight = scrollContainer.scrollHeight;
+            history.messages.forEach(message => {
+                messagesElement.insertBefore(createMessageElement(message), messagesElement.firstChild);
+            });
+
+            // Keep the view anchored on the message that was at the top
+            scrollContainer.scrollTop = scrollContainer.scrollHeight - previousHeight;
+        }
+    } catch (error) {
+        console.error('Error loading older messages:', error);
+    } finally {
+        loadingHistory = false;
     }
 }
 
@@ -577,44 +697,175 @@ async function loadParticipants() {
 
         if (response.ok) {
             const participants = await response.json();
-            document.getElementById('room-participants').textContent =
-                `${participants.length} participant${participants.length !== 1 ? 's' : ''}`;
+            participantCount = participants.length;
+            updateRoomStatus();
         }
     } catch (error) {
         console.error('Error loading participants:', error);
     }
 }
 
+async function loadOnlineUsers() {
+    if (!currentRoom) return;
+
+    try {
+        const response = await fetch(`${API_BASE}/rooms/${currentRoom.id}/online`, {
+            headers: {
+                'Authorization': `Bearer ${localStorage.getItem('token')}`
+            }
+        });
+
+        if (response.ok) {
+            const onlineUsers = await response.json();
+            onlineCount = onlineUsers.length;
+            updateRoomStatus();
+        }
+    } catch (error) {
+        console.error('Error loading online users:', error);
+    }
+}
+
+function updateRoomStatus() {
+    document.getElementById('room-participants').textContent =
+        `${participantCount} participant${participantCount !== 1 ? 's' : ''} · ${onlineCount} online`;
+}
+
+// Messages over the send rate limit are dropped by the server, which says so here
+function handleSendError(message) {
+    const error = JSON.parse(message.body);
+    const messagesElement = document.getElementById('messages');
+    messagesElement.appendChild(createMessageElement({
+        username: 'System',
+        content: error.error,
+        messageType: 'SYSTEM',
+        createdAt: new Date().toISOString()
+    }));
+    messagesElement.scrollTop = messagesElement.scrollHeight;
+}
+
+// Presence arrives as one delta per interval rather than a message per join or leave
+function handlePresence(message) {
+    const delta = JSON.parse(message.body);
+    onlineCount = delta.onlineCount;
+    updateRoomStatus();
+
+    const messagesElement = document.getElementById('messages');
+    const notices = [
+        ...delta.joined.map(username => `${username} joined the chat!`),
+        ...delta.left.map(username => `${username} left the chat!`)
+    ];
+    for (const content of notices) {
+        messagesElement.appendChild(createMessageElement({
+            username: 'System',
+            messageType: 'SYSTEM',
+            content,
+            createdAt: Date.now()
+        }));
+    }
+    messagesElement.scrollTop = messagesElement.scrollHeight;
+}
+
 // WebSocket Functions
-function connectWebSocket() {
+
+// Compact frames are positional arrays; the layout is documented in CompactMessageCodec
+const COMPACT_CONTENT_TYPE = 'application/vnd.chat.compact+json';
+const MESSAGE_TYPES = ['TEXT', 'IMAGE', 'FILE', 'SYSTEM'];
+
+// Returns the messages in a frame: batched frames (chat-batch header) carry an array of them
+function decodeMessages(message) {
+    const contentType = message.headers['content-type'] || '';
+    const compact = contentType.startsWith(COMPACT_CONTENT_TYPE);
+    if (compact && message.headers['chat-users'] !== undefined) {
+        const definitions = JSON.parse(unescapeHeader(message.headers['chat-users']));
+        for (const [userId, username] of Object.entries(definitions)) {
+            knownUsers.set(Number(userId), username);
+        }
+    }
+
+    const body = JSON.parse(message.body);
+    const messages = message.headers['chat-batch'] !== undefined ? body : [body];
+    return compact ? messages.map(decodeCompactMessage) : messages;
+}
+
+// stomp.js 2.x leaves STOMP header escapes in place, and JSON values always contain ':'
+function unescapeHeader(value) {
+    return value.replace(/\\([\\cnr])/g, (match, c) => ({ '\\': '\\', c: ':', n: '\n', r: '\r' })[c]);
+}
+
+function decodeCompactMessage([id, roomId, user, createdAt, type, content, edited, editedAt, seq]) {
+    return {
+        id,
+        roomId,
+        userId: typeof user === 'number' ? user : null,
+        username: typeof user === 'number' ? knownUsers.get(user) : user,
+        createdAt,
+        messageType: MESSAGE_TYPES[type],
+        content,
+        edited: edited === 1,
+        editedAt,
+        seq
+    };
+}
+
+function connectWebSocket(reconnecting = false) {
     const wsUrl = window.location.origin.includes('vercel.app') 
         ? 'https://your-backend-url.com/ws'  // TODO: Replace with your actual backend WebSocket URL
         : '/ws';
     const socket = new SockJS(wsUrl);
-    stompClient = Stomp.over(socket);
+    const client = Stomp.over(socket);
+    stompClient = client;
+
+    // The server authenticates the session once, from this CONNECT header,
+    // and sends room messages in the compact encoding that decodeMessage understands
+    const connectHeaders = {
+        'Authorization': `Bearer ${localStorage.getItem('token')}`,
+        'chat-encoding': 'compact'
+    };
+    knownUsers = new Map();
 
-    stompClient.connect({}, function (frame) {
+    stompClient.connect(connectHeaders, function (frame) {
         console.log('Connected to WebSocket');
 
         // Subscribe to room messages
         stompClient.subscribe(`/topic/room.${currentRoom.id}`, function (message) {
-            const receivedMessage = JSON.parse(message.body);
-            const messageElement = createMessageElement(receivedMessage);
-            document.getElementById('messages').appendChild(messageElement);
+            decodeMessages(message).forEach(receiveMessage);
 
             // Scroll to bottom
             const messagesContainer = document.getElementById('messages');
             messagesContainer.scrollTop = messagesContainer.scrollHeight;
         });
 
+        stompClient.subscribe(`/topic/room.${currentRoom.id}.presence`, handlePresence);
+        stompClient.subscribe('/user/queue/errors', handleSendError);
+        loadOnlineUsers();
+
         // Send join message
         const joinMessage = {
             username: currentUser.username,
             roomId: currentRoom.id
         };
         stompClient.send("/app/chat.addUser", {}, JSON.stringify(joinMessage));
+
+        // Subscribed first, so messages published during the catch-up are held, not lost
+        if (reconnecting) {
+            if (lastSeq !== null) {
+                resumeMessages();
+            } else {
+                catchingUp = true;
+                loadMessages();
+            }
+        }
     }, function (error) {
         console.error('WebSocket connection error:', error);
+
+        // Reconnect unless the user has left the room or switched to another connection
+        if (stompClient === client && currentRoom) {
+            setTimeout(function () {
+                if (stompClient === client && currentRoom) {
+                    connectWebSocket(true);
+                }
+            }, 2000);
+        }
     });
 }
 
@@ -0,0 +1,102 @@
+package com.chatapp.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with the committed baseline and prints the change in
+ * every benchmark's score. Exits with status 1 if any benchmark got slower than the
+ * threshold, in percent; a threshold of 0 only reports.
+ * <p>
+ * Usage: {@code BaselineComparison <baseline.json> <result.json> [threshold]}
+ */
+public final class BaselineComparison {
+    
+    private BaselineComparison() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> [threshold]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[0]);
+        File resultFile = new File(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        if (!baselineFile.exists()) {
+            System.out.println("No baseline at " + baselineFile + "; copy " + resultFile + " there to create one");
+            return;
+        }
+        
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Score> baseline = readScores(mapper.readTree(baselineFile));
+        Map<String, Score> current = readScores(mapper.readTree(resultFile));
+        
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.printf("%-90s %14s %14s %9s%n", entry.getKey(), "-", now.format(), "new");
+                continue;
+            }
+            double change = (now.value() - before.value()) / before.value() * 100;
+            // Positive slowdown means worse, whichever direction the mode counts in
+            double slowdown = now.higherIsBetter() ? -change : change;
+            boolean regressed = threshold > 0 && slowdown > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14s %14s %+8.1f%%%s%n", entry.getKey(), before.format(), now.format(), change,
+                    regressed ? "  REGRESSION" : "");
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("%-90s %14s %14s %9s%n", name, baseline.get(name).format(), "-", "not run");
+            }
+        }
+        
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) slower than the baseline by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Reads the primary score of every benchmark, keyed by its name and parameters.
+     */
+    private static Map<String, Score> readScores(JsonNode results) {
+        Map<String, Score> scores = new TreeMap<>();
+        for (JsonNode result : results) {
+            String name = result.path("benchmark").asText().replaceFirst("^com\\.chatapp\\.", "");
+            Map<String, String> params = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> param = fields.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            if (!params.isEmpty()) {
+                name += params.toString().replace(" ", "");
+            }
+            JsonNode metric = result.path("primaryMetric");
+            scores.put(name, new Score(metric.path("score").asDouble(), metric.path("scoreUnit").asText(),
+                    "thrpt".equals(result.path("mode").asText())));
+        }
+        return scores;
+    }
+    
+    private record Score(double value, String unit, boolean higherIsBetter) {
+        
+        String format() {
+            return String.format("%.3f %s", value, unit);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.chatapp.dto;
+
+import com.chatapp.entity.ChatRoom;
+import com.chatapp.entity.Message;
+import com.chatapp.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a {@link MessageDto} from a loaded {@link Message}, and serializing it to the
+ * JSON sent to REST and STOMP clients, with an object mapper configured like Spring Boot's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDtoBenchmark {
+    
+    private ObjectMapper objectMapper;
+    
+    private Message message;
+    
+    private MessageDto dto;
+    
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        
+        User user = new User("alice", "alice@example.com", "password");
+        user.setId(42L);
+        ChatRoom room = new ChatRoom("general", "General discussion", user);
+        room.setId(7L);
+        message = new Message("Hello everyone, the build is green again after the dependency bump", user, room);
+        message.setId(1234567890123L);
+        message.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30, 15));
+        message.setSeq(1001L);
+        
+        dto = new MessageDto(message);
+    }
+    
+    @Benchmark
+    public MessageDto construct() {
+        return new MessageDto(message);
+    }
+    
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+    
+    @Benchmark
+    public byte[] constructAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(new MessageDto(message));
+    }
+}
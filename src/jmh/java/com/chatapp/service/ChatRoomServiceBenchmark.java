@@ -0,0 +1,67 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.ChatRoomDto;
+import com.chatapp.entity.ChatRoom;
+import com.chatapp.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a loaded {@link ChatRoom} to the DTO returned by the room endpoints, for
+ * rooms with different numbers of participants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatRoomServiceBenchmark {
+    
+    @Param({"1", "100", "1000"})
+    private int participants;
+    
+    private ChatRoomService chatRoomService;
+    
+    private ChatRoom room;
+    
+    @Setup
+    public void setup() {
+        chatRoomService = new ChatRoomService();
+        
+        User owner = new User("alice", "alice@example.com", "password");
+        owner.setId(1L);
+        room = new ChatRoom("general", "General discussion", owner);
+        room.setId(7L);
+        room.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30));
+        room.setMessageCount(12345);
+        
+        Set<User> members = new HashSet<>();
+        members.add(owner);
+        for (long id = 2; id <= participants; id++) {
+            User member = new User("user" + id, "user" + id + "@example.com", "password");
+            member.setId(id);
+            members.add(member);
+        }
+        room.setParticipants(members);
+    }
+    
+    @Benchmark
+    public ChatRoomDto convertToDto() {
+        return chatRoomService.convertToDto(room);
+    }
+}
@@ -0,0 +1,158 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One room broadcast through {@link RoomFanout}, from publish until every subscriber's
+ * frame has been handed to the outbound channel.
+ * <p>
+ * The outbound channel runs its handler synchronously and discards the frames, so this
+ * measures the fan-out itself (frame headers, per-session ordering, compact encoding)
+ * without the WebSocket write. Partitioned delivery waits for the lanes to finish.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomFanoutBenchmark {
+    
+    private static final Long ROOM_ID = 7L;
+    
+    private static final int LANES = 4;
+    
+    @Param({"10", "100", "1000"})
+    private int subscribers;
+    
+    @Param({"json", "compact"})
+    private String encoding;
+    
+    @Param({"inline", "partitioned"})
+    private String delivery;
+    
+    private final AtomicLong frames = new AtomicLong();
+    
+    private long expectedFrames;
+    
+    private RoomFanout fanout;
+    
+    private CompactMessageCodec compactCodec;
+    
+    private MessageDto message;
+    
+    private byte[] json;
+    
+    private MessageHeaders headers;
+    
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        compactCodec = new CompactMessageCodec();
+        ReflectionTestUtils.setField(compactCodec, "objectMapper", objectMapper);
+        
+        RoomSubscriptionRegistry registry = new RoomSubscriptionRegistry();
+        ReflectionTestUtils.setField(registry, "configuredPartitions", LANES);
+        SessionWireFormats wireFormats = new SessionWireFormats();
+        
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+        outbound.subscribe(frame -> frames.incrementAndGet());
+        OrderedMessageChannelDecorator.configureInterceptor(outbound, true);
+        
+        fanout = new RoomFanout();
+        ReflectionTestUtils.setField(fanout, "subscriptionRegistry", registry);
+        ReflectionTestUtils.setField(fanout, "wireFormats", wireFormats);
+        ReflectionTestUtils.setField(fanout, "compactCodec", compactCodec);
+        ReflectionTestUtils.setField(fanout, "clientOutboundChannel", outbound);
+        ReflectionTestUtils.setField(fanout, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fanout, "threshold", "inline".equals(delivery) ? Integer.MAX_VALUE : 0);
+        fanout.start();
+        
+        for (int i = 0; i < subscribers; i++) {
+            String sessionId = "session-" + i;
+            if ("compact".equals(encoding)) {
+                StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+                connect.setSessionId(sessionId);
+                connect.setNativeHeader(CompactMessageCodec.ENCODING_HEADER, CompactMessageCodec.COMPACT_ENCODING);
+                wireFormats.onConnect(new SessionConnectEvent(this,
+                        MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders())));
+            }
+            
+            StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(RoomSubscriptionRegistry.ROOM_TOPIC_PREFIX + ROOM_ID);
+            SessionSubscribeEvent event = new SessionSubscribeEvent(this,
+                    MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+            registry.onSubscribe(event);
+            fanout.onSubscribe(event);
+        }
+        
+        message = new MessageDto();
+        message.setId(1234567890123L);
+        message.setContent("Hello everyone, the build is green again after the dependency bump");
+        message.setRoomId(ROOM_ID);
+        message.setUserId(42L);
+        message.setUsername("alice");
+        message.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30, 15));
+        message.setMessageType(Message.MessageType.TEXT);
+        message.setSeq(1001L);
+        json = objectMapper.writeValueAsBytes(message);
+        
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(RoomSubscriptionRegistry.ROOM_TOPIC_PREFIX + ROOM_ID);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers = accessor.getMessageHeaders();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        fanout.shutdown();
+    }
+    
+    @Benchmark
+    public long publish() {
+        // A new payload per broadcast, so compact sessions pay for one compact encoding as in production
+        EncodedPayload payload = new EncodedPayload(json, () -> compactCodec.encode(message));
+        fanout.publish(ROOM_ID, headers, payload);
+        
+        expectedFrames += subscribers;
+        long delivered;
+        while ((delivered = frames.get()) < expectedFrames) {
+            Thread.onSpinWait();
+        }
+        return delivered;
+    }
+}
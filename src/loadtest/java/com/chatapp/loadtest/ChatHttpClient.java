@@ -0,0 +1,91 @@
+package com.chatapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The REST calls the load test makes to set up users and rooms and to read server metrics.
+ */
+class ChatHttpClient {
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final String baseUrl;
+    
+    ChatHttpClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+    
+    /**
+     * Registers the user, or reuses it if it already exists, and returns its access token.
+     */
+    String registerAndLogin(String username, String password) throws IOException, InterruptedException {
+        // Fails harmlessly when rerunning against a server that already has the user
+        post("/api/auth/register", null, Map.of(
+                "username", username, "email", username + "@loadtest.local", "password", password));
+        JsonNode login = post("/api/auth/login", null, Map.of("username", username, "password", password));
+        if (!login.hasNonNull("accessToken")) {
+            throw new IllegalStateException("Login failed for " + username + ": " + login);
+        }
+        return login.get("accessToken").asText();
+    }
+    
+    long createRoom(String token, String name) throws IOException, InterruptedException {
+        JsonNode response = post("/api/rooms", token, Map.of("name", name, "description", "Load test room"));
+        if (!response.has("room")) {
+            throw new IllegalStateException("Could not create room " + name + ": " + response);
+        }
+        return response.get("room").get("id").asLong();
+    }
+    
+    void joinRoom(String token, long roomId) throws IOException, InterruptedException {
+        post("/api/rooms/" + roomId + "/join", token, Map.of());
+    }
+    
+    /**
+     * Returns the value of an actuator metric, or NaN if the server does not have it.
+     */
+    double metric(String token, String name, String tag) throws IOException, InterruptedException {
+        String path = "/actuator/metrics/" + name
+                + (tag != null ? "?tag=" + URLEncoder.encode(tag, StandardCharsets.UTF_8) : "");
+        HttpResponse<String> response = client.send(request(path, token).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            return Double.NaN;
+        }
+        for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+            if ("VALUE".equals(measurement.path("statistic").asText())) {
+                return measurement.path("value").asDouble();
+            }
+        }
+        return Double.NaN;
+    }
+    
+    private JsonNode post(String path, String token, Object body) throws IOException, InterruptedException {
+        HttpRequest request = request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return response.body().isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(response.body());
+    }
+    
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,38 @@
+package com.chatapp.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every send-to-receive latency of the measurement phase, so percentiles are exact.
+ * Receipts arrive on many client threads, so recording is synchronized.
+ */
+class LatencyRecorder {
+    
+    private long[] nanos = new long[1 << 16];
+    
+    private int count;
+    
+    synchronized void record(long latencyNanos) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, nanos.length * 2);
+        }
+        nanos[count++] = latencyNanos;
+    }
+    
+    /**
+     * Returns the sorted latencies recorded so far.
+     */
+    synchronized long[] snapshot() {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+    
+    static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+}
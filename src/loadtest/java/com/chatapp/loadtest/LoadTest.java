@@ -0,0 +1,406 @@
+package com.chatapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reproduces chat traffic against a local server and reports what it cost.
+ * <p>
+ * The load test starts the server on in-memory H2 (or uses {@code --url}), registers
+ * {@code --users} users, spreads them over {@code --rooms} rooms by the
+ * {@code --room-sizes} distribution, connects every user over SockJS/STOMP to
+ * {@code /ws} and subscribes it to its room. Random users then send
+ * {@code /app/chat.sendMessage} at {@code --rate} messages per second. Each message
+ * carries its send time, so every subscriber that receives it records the latency.
+ * <p>
+ * After {@code --warmup} seconds, {@code --duration} seconds are measured. The report
+ * has send-to-receive latency percentiles, send and delivery throughput, and the
+ * server's CPU and heap sampled from its actuator metrics; it is printed and written
+ * as JSON to {@code --report}. Clients and server share the machine, so keep the
+ * client load in mind when reading latencies.
+ */
+public class LoadTest {
+    
+    private static final String CONTENT_PREFIX = "lt:";
+    
+    private static final String ROOM_TOPIC_PREFIX = "/topic/room.";
+    
+    private static final int CONNECT_BATCH = 100;
+    
+    private final LoadTestOptions options;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    
+    private final AtomicLong sent = new AtomicLong();
+    
+    private final AtomicLong expectedDeliveries = new AtomicLong();
+    
+    private final AtomicLong sendErrors = new AtomicLong();
+    
+    private final AtomicLong errorFrames = new AtomicLong();
+    
+    private final AtomicLong transportErrors = new AtomicLong();
+    
+    private volatile long measureStart = Long.MAX_VALUE;
+    
+    private volatile long measureEnd = Long.MAX_VALUE;
+    
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ServerProcess server = options.url == null ? ServerProcess.start(options) : null;
+        try {
+            new LoadTest(options).run(server != null ? server.getBaseUrl() : options.url);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        System.exit(0);
+    }
+    
+    private void run(String baseUrl) throws Exception {
+        ChatHttpClient http = new ChatHttpClient(baseUrl);
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        ExecutorService setup = Executors.newFixedThreadPool(options.setupThreads);
+        
+        System.out.printf("Registering %d users%n", options.users);
+        String[] tokens = new String[options.users];
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < options.users; i++) {
+            int user = i;
+            tasks.add(setup.submit(() -> {
+                tokens[user] = http.registerAndLogin("lt" + runId + "-" + user, "loadtest-password");
+                return null;
+            }));
+        }
+        awaitAll(tasks);
+        
+        int[] roomOf = assignRooms();
+        int[] roomSizes = new int[options.rooms];
+        for (int room : roomOf) {
+            roomSizes[room]++;
+        }
+        
+        System.out.printf("Creating %d rooms (%s sizes, largest %d)%n", options.rooms, options.roomSizes, max(roomSizes));
+        // User i < rooms is the first member of room i and creates it
+        long[] roomIds = new long[options.rooms];
+        for (int i = 0; i < options.rooms; i++) {
+            roomIds[i] = http.createRoom(tokens[i], "loadtest-" + runId + "-" + i);
+        }
+        tasks.clear();
+        for (int i = options.rooms; i < options.users; i++) {
+            int user = i;
+            tasks.add(setup.submit(() -> {
+                http.joinRoom(tokens[user], roomIds[roomOf[user]]);
+                return null;
+            }));
+        }
+        awaitAll(tasks);
+        setup.shutdown();
+        
+        System.out.printf("Connecting %d STOMP sessions%n", options.users);
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        StompSession[] sessions = connectAll(stompClient, baseUrl, tokens);
+        for (int i = 0; i < options.users; i++) {
+            sessions[i].subscribe(ROOM_TOPIC_PREFIX + roomIds[roomOf[i]], new RoomFrameHandler());
+            sessions[i].subscribe("/user/queue/errors", new ErrorFrameHandler());
+        }
+        
+        ServerSampler sampler = new ServerSampler(http, tokens[0]);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        long start = System.nanoTime();
+        scheduler.scheduleAtFixedRate(new Sender(sessions, roomOf, roomIds, roomSizes, start), 0, 10, TimeUnit.MILLISECONDS);
+        
+        System.out.printf("Sending %.0f messages/s: %ds warmup, %ds measured%n",
+                options.rate, options.warmupSeconds, options.durationSeconds);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+        measureStart = System.nanoTime();
+        scheduler.scheduleAtFixedRate(sampler, 0, 1, TimeUnit.SECONDS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+        measureEnd = System.nanoTime();
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        
+        // Messages still in flight are counted if they arrive while draining
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.drainSeconds));
+        Map<String, Object> report = report(roomSizes, sampler);
+        for (StompSession session : sessions) {
+            session.disconnect();
+        }
+        stompClient.stop();
+        
+        print(report);
+        File reportFile = new File(options.report);
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+        System.out.println("Report written to " + reportFile);
+    }
+    
+    /**
+     * Puts user i in room i for the first {@code rooms} users, so no room is empty, and
+     * the rest in rooms drawn from the room-size distribution.
+     */
+    private int[] assignRooms() {
+        double[] cumulative = new double[options.rooms];
+        double total = 0;
+        for (int k = 0; k < options.rooms; k++) {
+            total += "zipf".equals(options.roomSizes) ? 1 / Math.pow(k + 1, options.zipfExponent) : 1;
+            cumulative[k] = total;
+        }
+        
+        Random random = new Random(42);
+        int[] roomOf = new int[options.users];
+        for (int i = 0; i < options.users; i++) {
+            if (i < options.rooms) {
+                roomOf[i] = i;
+                continue;
+            }
+            double draw = random.nextDouble() * total;
+            int room = 0;
+            while (cumulative[room] < draw) {
+                room++;
+            }
+            roomOf[i] = room;
+        }
+        return roomOf;
+    }
+    
+    private StompSession[] connectAll(WebSocketStompClient stompClient, String baseUrl, String[] tokens) {
+        StompSession[] sessions = new StompSession[tokens.length];
+        for (int batch = 0; batch < tokens.length; batch += CONNECT_BATCH) {
+            List<CompletableFuture<StompSession>> futures = new ArrayList<>();
+            for (int i = batch; i < Math.min(batch + CONNECT_BATCH, tokens.length); i++) {
+                StompHeaders connectHeaders = new StompHeaders();
+                connectHeaders.add("Authorization", "Bearer " + tokens[i]);
+                futures.add(stompClient.connectAsync(baseUrl + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                        new SessionHandler()));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                sessions[batch + i] = futures.get(i).orTimeout(30, TimeUnit.SECONDS).join();
+            }
+        }
+        return sessions;
+    }
+    
+    private Map<String, Object> report(int[] roomSizes, ServerSampler sampler) {
+        double seconds = (measureEnd - measureStart) / 1e9;
+        long[] sorted = latencies.snapshot();
+        
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("users", options.users);
+        config.put("rooms", options.rooms);
+        config.put("roomSizes", options.roomSizes);
+        config.put("largestRoom", max(roomSizes));
+        config.put("targetRate", options.rate);
+        config.put("durationSeconds", options.durationSeconds);
+        config.put("serverArgs", options.serverArgs);
+        
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("sent", sent.get());
+        throughput.put("sentPerSecond", sent.get() / seconds);
+        throughput.put("expectedDeliveries", expectedDeliveries.get());
+        throughput.put("deliveries", sorted.length);
+        throughput.put("deliveriesPerSecond", sorted.length / seconds);
+        throughput.put("sendErrors", sendErrors.get());
+        throughput.put("errorFrames", errorFrames.get());
+        throughput.put("transportErrors", transportErrors.get());
+        
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50Ms", LatencyRecorder.percentileMillis(sorted, 50));
+        latency.put("p90Ms", LatencyRecorder.percentileMillis(sorted, 90));
+        latency.put("p99Ms", LatencyRecorder.percentileMillis(sorted, 99));
+        latency.put("p999Ms", LatencyRecorder.percentileMillis(sorted, 99.9));
+        latency.put("maxMs", LatencyRecorder.percentileMillis(sorted, 100));
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("throughput", throughput);
+        report.put("latency", latency);
+        report.put("server", sampler.summary());
+        return report;
+    }
+    
+    private void print(Map<String, Object> report) throws Exception {
+        System.out.println();
+        System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+    }
+    
+    private static void awaitAll(List<Future<?>> tasks) throws Exception {
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+    }
+    
+    private static int max(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+    
+    /**
+     * Sends at the target rate from one thread, so no session is written to concurrently.
+     * Each tick catches up to the number of messages due since the start.
+     */
+    private class Sender implements Runnable {
+        
+        private final StompSession[] sessions;
+        
+        private final int[] roomOf;
+        
+        private final long[] roomIds;
+        
+        private final int[] roomSizes;
+        
+        private final long start;
+        
+        private final String padding;
+        
+        private long started;
+        
+        Sender(StompSession[] sessions, int[] roomOf, long[] roomIds, int[] roomSizes, long start) {
+            this.sessions = sessions;
+            this.roomOf = roomOf;
+            this.roomIds = roomIds;
+            this.roomSizes = roomSizes;
+            this.start = start;
+            this.padding = "x".repeat(Math.max(0, options.contentLength - 24));
+        }
+        
+        @Override
+        public void run() {
+            long due = (long) ((System.nanoTime() - start) / 1e9 * options.rate);
+            while (started < due) {
+                started++;
+                int user = ThreadLocalRandom.current().nextInt(sessions.length);
+                int room = roomOf[user];
+                StompHeaders headers = new StompHeaders();
+                headers.setDestination("/app/chat.sendMessage");
+                headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                
+                long now = System.nanoTime();
+                String content = CONTENT_PREFIX + now + ":" + padding;
+                String body = "{\"roomId\":" + roomIds[room] + ",\"content\":\"" + content + "\"}";
+                try {
+                    sessions[user].send(headers, body.getBytes(StandardCharsets.UTF_8));
+                    if (now >= measureStart && now < measureEnd) {
+                        sent.incrementAndGet();
+                        expectedDeliveries.addAndGet(roomSizes[room]);
+                    }
+                } catch (RuntimeException e) {
+                    sendErrors.incrementAndGet();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Records the latency of every message, or every message of a batched frame, that was
+     * sent during the measurement phase.
+     */
+    private class RoomFrameHandler implements StompFrameHandler {
+        
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+        
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long received = System.nanoTime();
+            try {
+                JsonNode frame = objectMapper.readTree((byte[]) payload);
+                if (frame.isArray()) {
+                    for (JsonNode message : frame) {
+                        record(message, received);
+                    }
+                } else {
+                    record(frame, received);
+                }
+            } catch (Exception e) {
+                transportErrors.incrementAndGet();
+            }
+        }
+        
+        private void record(JsonNode message, long received) {
+            String content = message.path("content").asText();
+            if (!content.startsWith(CONTENT_PREFIX)) {
+                return;
+            }
+            long sentAt = Long.parseLong(content.substring(CONTENT_PREFIX.length(), content.indexOf(':', CONTENT_PREFIX.length())));
+            if (sentAt >= measureStart && sentAt < measureEnd) {
+                latencies.record(received - sentAt);
+            }
+        }
+    }
+    
+    private class ErrorFrameHandler implements StompFrameHandler {
+        
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+        
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            errorFrames.incrementAndGet();
+        }
+    }
+    
+    private class SessionHandler extends StompSessionHandlerAdapter {
+        
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+                                    Throwable exception) {
+            transportErrors.incrementAndGet();
+        }
+        
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            transportErrors.incrementAndGet();
+        }
+        
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            // STOMP ERROR frames; the server closes the session after sending one
+            errorFrames.incrementAndGet();
+        }
+    }
+}
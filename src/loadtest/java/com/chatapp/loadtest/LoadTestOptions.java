@@ -0,0 +1,80 @@
+package com.chatapp.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line options of {@link LoadTest}, given as {@code --name=value}.
+ */
+class LoadTestOptions {
+    
+    int users = 100;
+    
+    int rooms = 10;
+    
+    // uniform: users spread evenly over rooms; zipf: room k gets a share proportional to 1/k^s
+    String roomSizes = "uniform";
+    
+    double zipfExponent = 1.0;
+    
+    // Messages per second across all users
+    double rate = 100;
+    
+    int warmupSeconds = 10;
+    
+    int durationSeconds = 30;
+    
+    int drainSeconds = 5;
+    
+    int contentLength = 100;
+    
+    int setupThreads = 8;
+    
+    // Target an already running server instead of starting one
+    String url;
+    
+    String serverHeap = "1g";
+    
+    List<String> serverArgs = new ArrayList<>();
+    
+    String report = "target/loadtest-report.json";
+    
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "users" -> options.users = Integer.parseInt(value);
+                case "rooms" -> options.rooms = Integer.parseInt(value);
+                case "room-sizes" -> options.roomSizes = value;
+                case "zipf-exponent" -> options.zipfExponent = Double.parseDouble(value);
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                case "duration" -> options.durationSeconds = Integer.parseInt(value);
+                case "drain" -> options.drainSeconds = Integer.parseInt(value);
+                case "content-length" -> options.contentLength = Integer.parseInt(value);
+                case "setup-threads" -> options.setupThreads = Integer.parseInt(value);
+                case "url" -> options.url = value;
+                case "server-heap" -> options.serverHeap = value;
+                case "server-arg" -> options.serverArgs.add(value);
+                case "report" -> options.report = value;
+                default -> throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        if (!"uniform".equals(options.roomSizes) && !"zipf".equals(options.roomSizes)) {
+            throw new IllegalArgumentException("--room-sizes must be uniform or zipf");
+        }
+        if (options.users < 1 || options.rooms < 1 || options.rooms > options.users) {
+            throw new IllegalArgumentException("Need at least one user per room");
+        }
+        return options;
+    }
+}
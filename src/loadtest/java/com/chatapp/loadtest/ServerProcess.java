@@ -0,0 +1,101 @@
+package com.chatapp.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The chat server under test, started in its own JVM so that its CPU and heap are not
+ * mixed up with the load generator's. It runs against in-memory H2 in PostgreSQL mode
+ * instead of a real database.
+ */
+class ServerProcess implements AutoCloseable {
+    
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    
+    private final Process process;
+    
+    private final String baseUrl;
+    
+    private ServerProcess(Process process, String baseUrl) {
+        this.process = process;
+        this.baseUrl = baseUrl;
+    }
+    
+    static ServerProcess start(LoadTestOptions options) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-Xmx" + options.serverHeap);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.chatapp.ChatApplication");
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH");
+        command.add("--spring.datasource.driverClassName=org.h2.Driver");
+        command.add("--spring.datasource.username=sa");
+        command.add("--spring.datasource.password=");
+        // PostgreSQL-only driver option
+        command.add("--spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=");
+        command.add("--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect");
+        command.add("--spring.jpa.show-sql=false");
+        command.add("--spring.devtools.restart.enabled=false");
+        command.add("--logging.level.org.springframework=WARN");
+        command.addAll(options.serverArgs);
+        
+        File log = new File("target/loadtest-server.log");
+        log.getParentFile().mkdirs();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        ServerProcess server = new ServerProcess(process, "http://localhost:" + port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        
+        System.out.println("Starting server on port " + port + ", log in " + log);
+        server.awaitStartup();
+        return server;
+    }
+    
+    String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    private void awaitStartup() throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health")).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Server exited with status " + process.exitValue()
+                        + "; see target/loadtest-server.log");
+            }
+            try {
+                // Any response, even 401, means the server is accepting requests
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                Thread.sleep(500);
+            }
+        }
+        throw new IllegalStateException("Server did not start within " + STARTUP_TIMEOUT);
+    }
+    
+    @Override
+    public void close() {
+        if (process.isAlive()) {
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.chatapp.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Samples the server's process CPU and heap from its actuator metrics once per run,
+ * which {@link LoadTest} schedules every second of the measurement phase.
+ */
+class ServerSampler implements Runnable {
+    
+    private static final double MB = 1024 * 1024;
+    
+    private final ChatHttpClient http;
+    
+    private final String token;
+    
+    private int samples;
+    
+    private double cpuTotal;
+    
+    private double cpuMax;
+    
+    private double heapTotal;
+    
+    private double heapMax;
+    
+    private double heapCommittedMax;
+    
+    ServerSampler(ChatHttpClient http, String token) {
+        this.http = http;
+        this.token = token;
+    }
+    
+    @Override
+    public void run() {
+        try {
+            double cpu = http.metric(token, "process.cpu.usage", null);
+            double heap = http.metric(token, "jvm.memory.used", "area:heap");
+            double committed = http.metric(token, "jvm.memory.committed", "area:heap");
+            if (Double.isNaN(cpu) || Double.isNaN(heap)) {
+                return;
+            }
+            synchronized (this) {
+                samples++;
+                cpuTotal += cpu;
+                cpuMax = Math.max(cpuMax, cpu);
+                heapTotal += heap;
+                heapMax = Math.max(heapMax, heap);
+                heapCommittedMax = Math.max(heapCommittedMax, committed);
+            }
+        } catch (Exception e) {
+            // A missed sample only makes the averages coarser
+        }
+    }
+    
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("samples", samples);
+        if (samples == 0) {
+            return summary;
+        }
+        // process.cpu.usage is a fraction of all cores
+        summary.put("cpuAvgPercent", cpuTotal / samples * 100);
+        summary.put("cpuMaxPercent", cpuMax * 100);
+        summary.put("heapAvgMb", heapTotal / samples / MB);
+        summary.put("heapMaxMb", heapMax / MB);
+        summary.put("heapCommittedMaxMb", heapCommittedMax / MB);
+        return summary;
+    }
+}
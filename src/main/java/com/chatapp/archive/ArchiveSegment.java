@@ -0,0 +1,293 @@
+package com.chatapp.archive;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.entity.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * One immutable archive file holding a contiguous ID range of a room's messages, oldest
+ * first. Messages are packed into blocks that are each Deflate-compressed, followed by an
+ * index of every block's ID and seq range and file position:
+ * <pre>
+ * block...
+ * int block count, per block: long firstId, long lastId, long firstSeq, long lastSeq,
+ *                             long position, int length, int message count
+ * long index position, int magic
+ * </pre>
+ * The index is kept in memory, so a read opens the file and inflates only the blocks it
+ * returns messages from. Blocks without sequenced messages have a seq range of -1.
+ */
+final class ArchiveSegment {
+    
+    static final String SUFFIX = ".seg";
+    
+    private static final int MAGIC = 0x43484152;
+    
+    private static final int FOOTER_SIZE = 12;
+    
+    private static final int INDEX_ENTRY_SIZE = 8 * 5 + 4 + 4;
+    
+    private static final long NO_SEQ = -1;
+    
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+    
+    private final Path path;
+    
+    private final long[] firstIds;
+    
+    private final long[] lastIds;
+    
+    private final long[] firstSeqs;
+    
+    private final long[] lastSeqs;
+    
+    private final long[] positions;
+    
+    private final int[] lengths;
+    
+    private final int[] counts;
+    
+    private ArchiveSegment(Path path, int blocks) {
+        this.path = path;
+        this.firstIds = new long[blocks];
+        this.lastIds = new long[blocks];
+        this.firstSeqs = new long[blocks];
+        this.lastSeqs = new long[blocks];
+        this.positions = new long[blocks];
+        this.lengths = new int[blocks];
+        this.counts = new int[blocks];
+    }
+    
+    static String fileName(long firstId) {
+        return String.format("%020d%s", firstId, SUFFIX);
+    }
+    
+    /**
+     * Writes messages, sorted by ID, to a new segment file. The file is synced and then
+     * moved into place, so a segment file is either complete or absent.
+     */
+    static ArchiveSegment write(Path dir, List<MessageDto> messages, int blockSize) throws IOException {
+        Path path = dir.resolve(fileName(messages.get(0).getId()));
+        Path temp = dir.resolve(path.getFileName() + ".tmp");
+        int blocks = (messages.size() + blockSize - 1) / blockSize;
+        ArchiveSegment index = new ArchiveSegment(path, blocks);
+        
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            long position = 0;
+            for (int block = 0; block < blocks; block++) {
+                List<MessageDto> blockMessages = messages.subList(block * blockSize,
+                        Math.min((block + 1) * blockSize, messages.size()));
+                byte[] compressed = compress(blockMessages);
+                out.write(compressed);
+                
+                index.firstIds[block] = blockMessages.get(0).getId();
+                index.lastIds[block] = blockMessages.get(blockMessages.size() - 1).getId();
+                index.firstSeqs[block] = NO_SEQ;
+                index.lastSeqs[block] = NO_SEQ;
+                for (MessageDto message : blockMessages) {
+                    if (message.getSeq() != null) {
+                        if (index.firstSeqs[block] == NO_SEQ) {
+                            index.firstSeqs[block] = message.getSeq();
+                        }
+                        index.lastSeqs[block] = message.getSeq();
+                    }
+                }
+                index.positions[block] = position;
+                index.lengths[block] = compressed.length;
+                index.counts[block] = blockMessages.size();
+                position += compressed.length;
+            }
+            
+            out.writeInt(blocks);
+            for (int block = 0; block < blocks; block++) {
+                out.writeLong(index.firstIds[block]);
+                out.writeLong(index.lastIds[block]);
+                out.writeLong(index.firstSeqs[block]);
+                out.writeLong(index.lastSeqs[block]);
+                out.writeLong(index.positions[block]);
+                out.writeInt(index.lengths[block]);
+                out.writeInt(index.counts[block]);
+            }
+            out.writeLong(position);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getChannel().force(true);
+        }
+        
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        return index;
+    }
+    
+    static ArchiveSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("Not an archive segment: " + path);
+            }
+            ByteBuffer footer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexPosition = footer.getLong();
+            if (footer.getInt() != MAGIC || indexPosition < 0 || indexPosition > size - FOOTER_SIZE - 4) {
+                throw new IOException("Not an archive segment: " + path);
+            }
+            
+            ByteBuffer indexBuffer = readFully(channel, indexPosition, (int) (size - FOOTER_SIZE - indexPosition));
+            int blocks = indexBuffer.getInt();
+            if (indexBuffer.remaining() != blocks * INDEX_ENTRY_SIZE) {
+                throw new IOException("Corrupt archive segment index: " + path);
+            }
+            ArchiveSegment index = new ArchiveSegment(path, blocks);
+            for (int block = 0; block < blocks; block++) {
+                index.firstIds[block] = indexBuffer.getLong();
+                index.lastIds[block] = indexBuffer.getLong();
+                index.firstSeqs[block] = indexBuffer.getLong();
+                index.lastSeqs[block] = indexBuffer.getLong();
+                index.positions[block] = indexBuffer.getLong();
+                index.lengths[block] = indexBuffer.getInt();
+                index.counts[block] = indexBuffer.getInt();
+            }
+            return index;
+        }
+    }
+    
+    /**
+     * Inflates one block, returning its messages oldest first.
+     */
+    List<MessageDto> readBlock(int block) throws IOException {
+        ByteBuffer compressed;
+        try (FileChannel channel = FileChannel.open(path)) {
+            compressed = readFully(channel, positions[block], lengths[block]);
+        }
+        
+        List<MessageDto> messages = new ArrayList<>(counts[block]);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(compressed.array())))) {
+            for (int i = 0; i < counts[block]; i++) {
+                messages.add(readMessage(in));
+            }
+        }
+        return messages;
+    }
+    
+    int getBlockCount() {
+        return counts.length;
+    }
+    
+    long getFirstId(int block) {
+        return firstIds[block];
+    }
+    
+    long getLastSeq(int block) {
+        return lastSeqs[block];
+    }
+    
+    int getCount(int block) {
+        return counts[block];
+    }
+    
+    long getFirstId() {
+        return firstIds[0];
+    }
+    
+    long getLastId() {
+        return lastIds[lastIds.length - 1];
+    }
+    
+    long getMaxSeq() {
+        long max = NO_SEQ;
+        for (long seq : lastSeqs) {
+            max = Math.max(max, seq);
+        }
+        return max;
+    }
+    
+    int getMessageCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+    
+    private static byte[] compress(List<MessageDto> messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            for (MessageDto message : messages) {
+                writeMessage(out, message);
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static void writeMessage(DataOutputStream out, MessageDto message) throws IOException {
+        out.writeLong(message.getId());
+        out.writeLong(message.getRoomId());
+        out.writeLong(message.getUserId());
+        out.writeLong(message.getSeq() != null ? message.getSeq() : NO_SEQ);
+        out.writeByte(message.getMessageType() != null ? message.getMessageType().ordinal() : 0);
+        writeTime(out, message.getCreatedAt());
+        out.writeBoolean(message.isEdited());
+        writeTime(out, message.getEditedAt());
+        out.writeUTF(message.getUsername() != null ? message.getUsername() : "");
+        out.writeUTF(message.getContent());
+    }
+    
+    private static MessageDto readMessage(DataInputStream in) throws IOException {
+        MessageDto message = new MessageDto();
+        message.setId(in.readLong());
+        message.setRoomId(in.readLong());
+        message.setUserId(in.readLong());
+        long seq = in.readLong();
+        message.setSeq(seq != NO_SEQ ? seq : null);
+        message.setMessageType(TYPES[in.readByte()]);
+        message.setCreatedAt(readTime(in));
+        message.setEdited(in.readBoolean());
+        message.setEditedAt(readTime(in));
+        message.setUsername(in.readUTF());
+        message.setContent(in.readUTF());
+        return message;
+    }
+    
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(time.getNano());
+        }
+    }
+    
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+    
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive segment");
+            }
+        }
+        return buffer.flip();
+    }
+}
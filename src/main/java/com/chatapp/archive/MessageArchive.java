@@ -0,0 +1,202 @@
+package com.chatapp.archive;
+
+import com.chatapp.dto.MessageDto;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Local-disk store for messages moved out of the messages table by {@link MessageArchiveJob}.
+ * Each room has a directory of {@link ArchiveSegment} files covering consecutive ID
+ * ranges, all older than anything still in the table. Reads take the same cursors as
+ * the table queries they continue, so {@code MessageService} can fall through to the
+ * archive when a page runs past the oldest stored message.
+ * <p>
+ * Archived messages are read-only: they can no longer be edited, deleted or searched.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.messages.archive.enabled", havingValue = "true")
+public class MessageArchive {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchive.class);
+    
+    @Value("${chat.messages.archive.dir:data/archive}")
+    private String dir;
+    
+    @Value("${chat.messages.archive.block-size:256}")
+    private int blockSize;
+    
+    private Path directory;
+    
+    // Oldest first; lists are replaced, never modified, so readers need no locking
+    private final Map<Long, List<ArchiveSegment>> segmentsByRoom = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void load() throws IOException {
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        
+        int segmentCount = 0;
+        try (Stream<Path> roomDirs = Files.list(directory)) {
+            for (Path roomDir : roomDirs.filter(Files::isDirectory).toList()) {
+                String name = roomDir.getFileName().toString();
+                if (!name.matches("\\d+")) {
+                    continue;
+                }
+                Long roomId = Long.valueOf(name);
+                List<ArchiveSegment> segments = new ArrayList<>();
+                try (Stream<Path> files = Files.list(roomDir)) {
+                    for (Path file : files.sorted().toList()) {
+                        if (file.toString().endsWith(ArchiveSegment.SUFFIX)) {
+                            segments.add(ArchiveSegment.open(file));
+                        } else {
+                            // Left by a write that was interrupted before the segment was moved into place
+                            Files.delete(file);
+                        }
+                    }
+                }
+                if (!segments.isEmpty()) {
+                    segmentsByRoom.put(roomId, List.copyOf(segments));
+                    segmentCount += segments.size();
+                }
+            }
+        }
+        logger.info("Message archive opened with {} segments in {} rooms", segmentCount, segmentsByRoom.size());
+    }
+    
+    /**
+     * Writes messages, oldest first and all newer than the room's archived messages, as a
+     * new segment. Only the archive job calls this, so appends to a room never race.
+     */
+    void append(Long roomId, List<MessageDto> messages) throws IOException {
+        Path roomDir = directory.resolve(roomId.toString());
+        Files.createDirectories(roomDir);
+        ArchiveSegment segment = ArchiveSegment.write(roomDir, messages, blockSize);
+        
+        List<ArchiveSegment> segments = new ArrayList<>(segmentsByRoom.getOrDefault(roomId, List.of()));
+        segments.add(segment);
+        segmentsByRoom.put(roomId, List.copyOf(segments));
+    }
+    
+    /**
+     * Returns the ID of the newest archived message in the room, or 0 if none are archived.
+     */
+    public long getLastArchivedId(Long roomId) {
+        List<ArchiveSegment> segments = segmentsByRoom.get(roomId);
+        return segments != null ? segments.get(segments.size() - 1).getLastId() : 0;
+    }
+    
+    /**
+     * Returns the highest archived seq in the room, or -1 if none are archived.
+     */
+    public long getMaxSeq(Long roomId) {
+        long max = -1;
+        for (ArchiveSegment segment : segmentsByRoom.getOrDefault(roomId, List.of())) {
+            max = Math.max(max, segment.getMaxSeq());
+        }
+        return max;
+    }
+    
+    /**
+     * Returns up to {@code limit} archived messages older than {@code beforeId}, newest
+     * first. A null {@code beforeId} starts from the newest archived message.
+     */
+    public List<MessageDto> getBefore(Long roomId, Long beforeId, int limit) {
+        long bound = beforeId != null ? beforeId : Long.MAX_VALUE;
+        List<MessageDto> messages = new ArrayList<>();
+        List<ArchiveSegment> segments = segmentsByRoom.getOrDefault(roomId, List.of());
+        
+        for (int s = segments.size() - 1; s >= 0 && messages.size() < limit; s--) {
+            ArchiveSegment segment = segments.get(s);
+            for (int block = segment.getBlockCount() - 1; block >= 0 && messages.size() < limit; block--) {
+                if (segment.getFirstId(block) >= bound) {
+                    continue;
+                }
+                List<MessageDto> blockMessages = readBlock(segment, block);
+                for (int i = blockMessages.size() - 1; i >= 0 && messages.size() < limit; i--) {
+                    if (blockMessages.get(i).getId() < bound) {
+                        messages.add(blockMessages.get(i));
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+    
+    /**
+     * Returns up to {@code limit} archived messages, newest first, after skipping the
+     * {@code skip} newest. Skipped blocks are counted from the index, not read.
+     */
+    public List<MessageDto> getLatest(Long roomId, long skip, int limit) {
+        List<MessageDto> messages = new ArrayList<>();
+        List<ArchiveSegment> segments = segmentsByRoom.getOrDefault(roomId, List.of());
+        long toSkip = skip;
+        
+        for (int s = segments.size() - 1; s >= 0 && messages.size() < limit; s--) {
+            ArchiveSegment segment = segments.get(s);
+            if (toSkip >= segment.getMessageCount()) {
+                toSkip -= segment.getMessageCount();
+                continue;
+            }
+            for (int block = segment.getBlockCount() - 1; block >= 0 && messages.size() < limit; block--) {
+                if (toSkip >= segment.getCount(block)) {
+                    toSkip -= segment.getCount(block);
+                    continue;
+                }
+                List<MessageDto> blockMessages = readBlock(segment, block);
+                for (int i = blockMessages.size() - 1; i >= 0 && messages.size() < limit; i--) {
+                    if (toSkip > 0) {
+                        toSkip--;
+                    } else {
+                        messages.add(blockMessages.get(i));
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+    
+    /**
+     * Returns up to {@code limit} archived messages with a seq above {@code afterSeq},
+     * oldest first.
+     */
+    public List<MessageDto> getAfterSeq(Long roomId, long afterSeq, int limit) {
+        List<MessageDto> messages = new ArrayList<>();
+        for (ArchiveSegment segment : segmentsByRoom.getOrDefault(roomId, List.of())) {
+            for (int block = 0; block < segment.getBlockCount() && messages.size() < limit; block++) {
+                if (segment.getLastSeq(block) <= afterSeq) {
+                    continue;
+                }
+                for (MessageDto message : readBlock(segment, block)) {
+                    if (message.getSeq() != null && message.getSeq() > afterSeq && messages.size() < limit) {
+                        messages.add(message);
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+    
+    private List<MessageDto> readBlock(ArchiveSegment segment, int block) {
+        try {
+            return segment.readBlock(block);
+        } catch (IOException e) {
+            logger.error("Failed to read archived messages from block {} of segment {}",
+                    block, segment.getFirstId(), e);
+            throw new RuntimeException("Failed to read archived messages");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.chatapp.archive;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.id.SnowflakeIdGenerator;
+import com.chatapp.repository.MessageRepository;
+import com.chatapp.search.MessageSearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically moves messages older than {@code chat.messages.archive.max-age-days} from
+ * the messages table into the {@link MessageArchive}, a room at a time and in batches of
+ * {@code batch-size}. Message IDs are time-ordered, so the age cutoff is an ID and both
+ * the selection and the delete run on the (room_id, id) index.
+ * <p>
+ * Each batch is moved in one transaction that locks its rows, so an edit or delete either
+ * lands before the batch is read or fails once the rows are gone; the archive never holds
+ * a stale copy of a message still in the table. The segment is on disk before the delete
+ * commits. If the commit fails after that, the next run first deletes the rows the
+ * archive already holds.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.messages.archive.enabled", havingValue = "true")
+public class MessageArchiveJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiveJob.class);
+    
+    @Value("${chat.messages.archive.max-age-days:30}")
+    private long maxAgeDays;
+    
+    @Value("${chat.messages.archive.interval-ms:3600000}")
+    private long intervalMs;
+    
+    @Value("${chat.messages.archive.batch-size:10000}")
+    private int batchSize;
+    
+    @Autowired
+    private MessageArchive archive;
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Counter archivedMessages;
+    
+    private ScheduledExecutorService scheduler;
+    
+    @PostConstruct
+    public void start() {
+        archivedMessages = Counter.builder("chat.archive.messages")
+                .description("Messages moved from the messages table into the archive")
+                .register(meterRegistry);
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archiveOldMessages, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+    
+    /**
+     * Archives every room's messages that are older than the maximum age.
+     *
+     * @return the number of messages archived
+     */
+    public int archiveOldMessages() {
+        long cutoffId = SnowflakeIdGenerator.lowestIdAt(
+                System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays));
+        
+        int archived = 0;
+        for (Long roomId : messageRepository.findRoomIdsWithMessagesBefore(cutoffId)) {
+            try {
+                archived += archiveRoom(roomId, cutoffId);
+            } catch (RuntimeException e) {
+                // The room's rows stay in the table and are retried on the next run
+                logger.error("Failed to archive messages of room {}", roomId, e);
+            }
+        }
+        
+        if (archived > 0) {
+            logger.info("Archived {} messages older than {} days", archived, maxAgeDays);
+        }
+        return archived;
+    }
+    
+    private int archiveRoom(Long roomId, long cutoffId) {
+        long archivedUpTo = archive.getLastArchivedId(roomId);
+        if (archivedUpTo > 0) {
+            messageRepository.deleteByRoomIdAndIdUpTo(roomId, archivedUpTo);
+        }
+        
+        int archived = 0;
+        while (true) {
+            List<MessageDto> batch = transactionTemplate.execute(status -> moveBatch(roomId, cutoffId));
+            if (batch.isEmpty()) {
+                return archived;
+            }
+            for (MessageDto message : batch) {
+                messageSearchIndex.remove(message.getId(), roomId);
+            }
+            
+            archived += batch.size();
+            archivedMessages.increment(batch.size());
+            if (batch.size() < batchSize) {
+                return archived;
+            }
+        }
+    }
+    
+    /**
+     * Archives and deletes the room's oldest batch of messages below the cutoff. Must run
+     * in a transaction, which holds the rows' locks until the delete commits.
+     */
+    private List<MessageDto> moveBatch(Long roomId, long cutoffId) {
+        List<MessageDto> batch = messageRepository
+                .findByRoomIdAndIdLessThanOrderByIdAsc(roomId, cutoffId, PageRequest.of(0, batchSize)).stream()
+                .map(MessageDto::new)
+                .toList();
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        
+        // The delete is only committed once the segment is on disk
+        int deleted = messageRepository.deleteByIdIn(batch.stream().map(MessageDto::getId).toList());
+        if (deleted != batch.size()) {
+            // Cannot happen while the rows are locked; rolling back leaves the table as it was
+            throw new IllegalStateException("Read " + batch.size() + " messages of room " + roomId
+                    + " to archive but deleted " + deleted);
+        }
+        try {
+            archive.append(roomId, batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return batch;
+    }
+}
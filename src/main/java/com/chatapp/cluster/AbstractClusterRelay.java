@@ -0,0 +1,127 @@
+package com.chatapp.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bookkeeping shared by the transports. Outgoing messages are stamped with this relay's
+ * origin, drawn at random when it is created, and a local counter, so message identity
+ * does not depend on any per-node configuration. The receiver remembers the origin and
+ * sequence of recently received messages to drop duplicates (a transport may resend
+ * after reconnecting). Also keeps the {@code chat.cluster.messages} counters.
+ */
+public abstract class AbstractClusterRelay implements ClusterRelay {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.cluster.dedupe-window:100000}")
+    private int dedupeWindow;
+    
+    // A restarted node draws a new origin, so its counter starting over cannot collide
+    private final long origin = new SecureRandom().nextLong();
+    
+    private final AtomicLong sequence = new AtomicLong();
+    
+    // Insertion-ordered, so the oldest keys are forgotten first
+    private final LinkedHashMap<MessageKey, Boolean> seen = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MessageKey, Boolean> eldest) {
+            return size() > dedupeWindow;
+        }
+    };
+    
+    private volatile Consumer<ClusterMessage> receiver;
+    
+    private Counter sent;
+    
+    private Counter received;
+    
+    private Counter duplicates;
+    
+    private Counter dropped;
+    
+    @PostConstruct
+    public void initMetrics() {
+        sent = counter("sent");
+        received = counter("received");
+        duplicates = counter("duplicate");
+        dropped = counter("dropped");
+    }
+    
+    @Override
+    public void start(Consumer<ClusterMessage> receiver) {
+        this.receiver = receiver;
+        startTransport();
+    }
+    
+    protected abstract void startTransport();
+    
+    @Override
+    public void publish(String destination, byte[] payload) {
+        send(new ClusterMessage(origin, sequence.incrementAndGet(), destination, payload));
+    }
+    
+    /**
+     * Queues a stamped message for the other nodes. Does not block.
+     */
+    protected abstract void send(ClusterMessage message);
+    
+    /**
+     * Hands a message from another node to the receiver unless it was seen before. If the
+     * receiver fails, the message is forgotten again so that a resent copy is not dropped.
+     */
+    protected void receive(ClusterMessage message) {
+        MessageKey key = new MessageKey(message.origin(), message.sequence());
+        if (!firstSeen(key)) {
+            duplicates.increment();
+            return;
+        }
+        received.increment();
+        Consumer<ClusterMessage> current = receiver;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.accept(message);
+        } catch (RuntimeException e) {
+            forget(key);
+            throw e;
+        }
+    }
+    
+    protected void recordSent(int count) {
+        sent.increment(count);
+    }
+    
+    protected void recordDropped() {
+        dropped.increment();
+    }
+    
+    private synchronized boolean firstSeen(MessageKey key) {
+        return seen.put(key, Boolean.TRUE) == null;
+    }
+    
+    private synchronized void forget(MessageKey key) {
+        seen.remove(key);
+    }
+    
+    private Counter counter(String outcome) {
+        return Counter.builder("chat.cluster.messages")
+                .description("Broadcasts relayed between cluster nodes")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    private record MessageKey(long origin, long sequence) {
+    }
+}
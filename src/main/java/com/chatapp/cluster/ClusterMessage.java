@@ -0,0 +1,10 @@
+package com.chatapp.cluster;
+
+/**
+ * A broadcast relayed between nodes: the destination it was published to on the origin
+ * node and its encoded payload. {@code origin} identifies the publishing relay instance
+ * and {@code sequence} counts the messages it has published, so together they are unique
+ * across the cluster and a receiver can drop copies it has already delivered.
+ */
+public record ClusterMessage(long origin, long sequence, String destination, byte[] payload) {
+}
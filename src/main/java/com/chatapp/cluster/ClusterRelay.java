@@ -0,0 +1,22 @@
+package com.chatapp.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries broadcasts published on this node to the other nodes of the cluster, so that
+ * subscribers connected anywhere see them. A node never receives its own messages, and
+ * each message is handed to the receiver at most once per node.
+ */
+public interface ClusterRelay {
+    
+    /**
+     * Starts relaying; {@code receiver} is called for each message published on another node.
+     */
+    void start(Consumer<ClusterMessage> receiver);
+    
+    /**
+     * Queues a payload published locally to {@code destination} for the other nodes. Does
+     * not block.
+     */
+    void publish(String destination, byte[] payload);
+}
@@ -0,0 +1,57 @@
+package com.chatapp.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-JVM relay: application contexts in the same process that share a cluster name
+ * form a cluster, which lets tests run several nodes without opening sockets. Messages
+ * are delivered synchronously on the publishing thread.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.transport", havingValue = "loopback")
+public class LoopbackClusterRelay extends AbstractClusterRelay {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackClusterRelay.class);
+    
+    private static final Map<String, Set<LoopbackClusterRelay>> CLUSTERS = new ConcurrentHashMap<>();
+    
+    @Value("${chat.cluster.loopback.name:default}")
+    private String clusterName;
+    
+    @Override
+    protected void startTransport() {
+        CLUSTERS.computeIfAbsent(clusterName, name -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+    
+    @Override
+    protected void send(ClusterMessage message) {
+        for (LoopbackClusterRelay node : CLUSTERS.getOrDefault(clusterName, Set.of())) {
+            if (node != this) {
+                try {
+                    node.receive(message);
+                } catch (RuntimeException e) {
+                    // One failing node must not keep the message from the others or fail the sender
+                    logger.error("Failed to deliver relayed message to {}", message.destination(), e);
+                }
+            }
+        }
+        recordSent(1);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        Set<LoopbackClusterRelay> nodes = CLUSTERS.get(clusterName);
+        if (nodes != null) {
+            nodes.remove(this);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.chatapp.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Peer-to-peer relay over plain TCP. Every node listens on {@code chat.cluster.tcp.port}
+ * and opens one outbound link to each address in {@code chat.cluster.tcp.peers}, so the
+ * peer lists should form a full mesh.
+ * <p>
+ * Each link has a bounded queue drained by its own thread, which writes whatever has
+ * accumulated as one batch of up to {@code batch-size} messages. A batch that fails is
+ * resent after reconnecting; receivers drop the copies that did arrive. Messages for a
+ * peer whose queue is full are dropped and counted. The protocol is unauthenticated, so
+ * the port must only be reachable from the cluster's private network.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.transport", havingValue = "tcp")
+public class TcpClusterRelay extends AbstractClusterRelay {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TcpClusterRelay.class);
+    
+    // Frames larger than this are treated as a corrupt stream
+    private static final int MAX_BATCH_SIZE = 65536;
+    
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    
+    @Value("${chat.cluster.tcp.bind-address:0.0.0.0}")
+    private String bindAddress;
+    
+    @Value("${chat.cluster.tcp.port:7070}")
+    private int port;
+    
+    @Value("${chat.cluster.tcp.peers:}")
+    private String peers;
+    
+    @Value("${chat.cluster.tcp.batch-size:256}")
+    private int batchSize;
+    
+    @Value("${chat.cluster.tcp.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${chat.cluster.tcp.reconnect-delay-ms:1000}")
+    private long reconnectDelayMs;
+    
+    private final List<PeerLink> links = new CopyOnWriteArrayList<>();
+    
+    private final List<Socket> inboundSockets = new CopyOnWriteArrayList<>();
+    
+    private ServerSocket serverSocket;
+    
+    private volatile boolean running;
+    
+    @Override
+    protected void startTransport() {
+        // Checked before anything starts, so a typo fails startup instead of every reconnect
+        List<PeerLink> configured = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            String address = peer.trim();
+            if (!address.isEmpty()) {
+                configured.add(new PeerLink(address, parsePeer(address)));
+            }
+        }
+        
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot listen for cluster peers on port " + port, e);
+        }
+        running = true;
+        startThread("cluster-accept", this::acceptLoop);
+        
+        for (PeerLink link : configured) {
+            links.add(link);
+            link.thread = startThread("cluster-link-" + link.address, link::run);
+        }
+        logger.info("Cluster relay listening on {}:{} with {} peer link(s)", bindAddress, port, links.size());
+    }
+    
+    @Override
+    protected void send(ClusterMessage message) {
+        for (PeerLink link : links) {
+            if (!link.queue.offer(message)) {
+                recordDropped();
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        for (PeerLink link : links) {
+            if (link.thread != null) {
+                link.thread.interrupt();
+            }
+            closeQuietly(link.socket);
+        }
+        inboundSockets.forEach(TcpClusterRelay::closeQuietly);
+    }
+    
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                inboundSockets.add(socket);
+                startThread("cluster-inbound-" + socket.getRemoteSocketAddress(), () -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Failed to accept cluster peer connection", e);
+                }
+            }
+        }
+    }
+    
+    private void readLoop(Socket socket) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (running) {
+                int count = in.readInt();
+                if (count < 0 || count > MAX_BATCH_SIZE) {
+                    throw new IOException("Invalid batch size " + count);
+                }
+                for (int i = 0; i < count; i++) {
+                    ClusterMessage message = readMessage(in);
+                    try {
+                        receive(message);
+                    } catch (RuntimeException e) {
+                        // The stream is still in sync, so only this message is lost; the link stays up
+                        logger.error("Failed to deliver message relayed by {} to {}",
+                                socket.getRemoteSocketAddress(), message.destination(), e);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            // Peer closed the link
+        } catch (IOException e) {
+            if (running) {
+                logger.warn("Cluster peer {} disconnected: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            inboundSockets.remove(socket);
+        }
+    }
+    
+    private static ClusterMessage readMessage(DataInputStream in) throws IOException {
+        long origin = in.readLong();
+        long sequence = in.readLong();
+        String destination = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Invalid payload length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new ClusterMessage(origin, sequence, destination, payload);
+    }
+    
+    private static InetSocketAddress parsePeer(String address) {
+        int separator = address.lastIndexOf(':');
+        int peerPort;
+        try {
+            peerPort = separator > 0 ? Integer.parseInt(address.substring(separator + 1)) : -1;
+        } catch (NumberFormatException e) {
+            peerPort = -1;
+        }
+        if (peerPort < 1 || peerPort > 65535) {
+            throw new RuntimeException("Invalid cluster peer '" + address + "', expected host:port");
+        }
+        // Resolved on every connect, so a peer that moves is found again
+        return InetSocketAddress.createUnresolved(address.substring(0, separator), peerPort);
+    }
+    
+    private static void writeBatch(DataOutputStream out, List<ClusterMessage> batch) throws IOException {
+        out.writeInt(batch.size());
+        for (ClusterMessage message : batch) {
+            out.writeLong(message.origin());
+            out.writeLong(message.sequence());
+            out.writeUTF(message.destination());
+            out.writeInt(message.payload().length);
+            out.write(message.payload());
+        }
+        out.flush();
+    }
+    
+    private static Thread startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Shutting down anyway
+        }
+    }
+    
+    /**
+     * Outbound link to one peer, with its own queue and writer thread.
+     */
+    private final class PeerLink {
+        
+        private final String address;
+        
+        private final InetSocketAddress peer;
+        
+        private final BlockingQueue<ClusterMessage> queue = new ArrayBlockingQueue<>(queueCapacity);
+        
+        private volatile Socket socket;
+        
+        private DataOutputStream out;
+        
+        private volatile Thread thread;
+        
+        PeerLink(String address, InetSocketAddress peer) {
+            this.address = address;
+            this.peer = peer;
+        }
+        
+        void run() {
+            List<ClusterMessage> batch = new ArrayList<>(batchSize);
+            while (running) {
+                try {
+                    if (batch.isEmpty()) {
+                        batch.add(queue.take());
+                        queue.drainTo(batch, batchSize - 1);
+                    }
+                    writeBatch(connect(), batch);
+                    recordSent(batch.size());
+                    batch.clear();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    if (!running) {
+                        return;
+                    }
+                    logger.warn("Cluster link to {} failed: {}; retrying in {} ms", address, e.getMessage(), reconnectDelayMs);
+                    if (!reconnectLater()) {
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // An unexpected error must not end the link for the rest of the process. The
+                    // batch is dropped, since sending it again would most likely fail the same way.
+                    if (!running) {
+                        return;
+                    }
+                    logger.error("Unexpected error on cluster link to {}, dropping {} messages; retrying in {} ms",
+                            address, batch.size(), reconnectDelayMs, e);
+                    batch.forEach(message -> recordDropped());
+                    batch.clear();
+                    if (!reconnectLater()) {
+                        return;
+                    }
+                }
+            }
+        }
+        
+        private boolean reconnectLater() {
+            disconnect();
+            try {
+                Thread.sleep(reconnectDelayMs);
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        
+        private DataOutputStream connect() throws IOException {
+            if (out != null) {
+                return out;
+            }
+            Socket connected = new Socket();
+            connected.setTcpNoDelay(true);
+            connected.connect(new InetSocketAddress(peer.getHostString(), peer.getPort()), 5000);
+            socket = connected;
+            out = new DataOutputStream(new BufferedOutputStream(connected.getOutputStream()));
+            logger.info("Connected to cluster peer {}", address);
+            return out;
+        }
+        
+        private void disconnect() {
+            closeQuietly(socket);
+            socket = null;
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.chatapp.commitlog;
+
+import com.chatapp.dto.MessageDto;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped file of the commit log. Records are laid out back to
+ * back as {@code [int length][int crc32c][payload]}; the file starts zero-filled, so a
+ * length of 0 marks the end of the written part.
+ * <p>
+ * The file is named after its base offset, the log offset of its first byte, so a
+ * record's log offset is the base offset plus its position in the file.
+ */
+final class CommitLogSegment {
+    
+    static final String SUFFIX = ".log";
+    
+    static final int HEADER_SIZE = 8;
+    
+    private final long baseOffset;
+    
+    private final Path path;
+    
+    private final FileChannel channel;
+    
+    private final MappedByteBuffer buffer;
+    
+    private final int size;
+    
+    // Only touched by the appending thread, under the log's lock
+    private int writePosition;
+    
+    private CommitLogSegment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.size = buffer.capacity();
+    }
+    
+    static CommitLogSegment create(Path dir, long baseOffset, int size) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CommitLogSegment(baseOffset, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+    
+    static CommitLogSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CommitLogSegment(baseOffset, path, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+    
+    static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * Scans the records from the start of the file, stopping at the end marker or at the
+     * first record whose checksum does not match, which is what a write torn by an OS
+     * crash leaves behind. Anything after the last valid record is zeroed so the next
+     * append starts from a clean end marker.
+     *
+     * @return the number of valid records
+     */
+    int recover() {
+        int position = 0;
+        int records = 0;
+        while (true) {
+            int length = recordLength(position);
+            if (length <= 0 || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            if (crc(payload) != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            records++;
+        }
+        
+        writePosition = position;
+        if (position + 4 <= size && buffer.getInt(position) != 0) {
+            for (int i = position; i < size; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        return records;
+    }
+    
+    /**
+     * Writes a record at the end of the segment.
+     *
+     * @return the record's position, or -1 if it does not fit and the log should roll over
+     */
+    int append(byte[] payload, int crc) {
+        if (writePosition + HEADER_SIZE + payload.length > size) {
+            return -1;
+        }
+        int position = writePosition;
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position + 4, crc);
+        // The length goes in last: until it is set, readers see the end marker
+        buffer.putInt(position, payload.length);
+        writePosition = position + HEADER_SIZE + payload.length;
+        return position;
+    }
+    
+    /**
+     * Returns the length of the record at {@code position}, or 0 at the end of the segment.
+     */
+    int recordLength(int position) {
+        return position + 4 <= size ? buffer.getInt(position) : 0;
+    }
+    
+    MessageDto read(int position) {
+        return MessageRecord.decode(buffer, position + HEADER_SIZE);
+    }
+    
+    void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+    
+    /**
+     * Closes the file. The mapping stays valid until the buffer is garbage collected, so
+     * a reader still holding this segment can finish decoding from it.
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+    
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+    
+    long getBaseOffset() {
+        return baseOffset;
+    }
+    
+    int getSize() {
+        return size;
+    }
+    
+    int getWritePosition() {
+        return writePosition;
+    }
+}
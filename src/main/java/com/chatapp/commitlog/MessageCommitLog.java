@@ -0,0 +1,405 @@
+package com.chatapp.commitlog;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.service.MessageBatchWriter;
+import com.chatapp.service.ServerBusyException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only write-ahead log for chat messages, kept in memory-mapped segment files.
+ * A message is accepted once its record is in the mapped file, which survives a crash
+ * of the process; the dirty pages are forced to disk every {@code sync-interval-ms}, or
+ * on every append when that is 0.
+ * <p>
+ * A projector thread copies the log into the messages table in batches and records how
+ * far it got in a checkpoint file. Segments are deleted once fully projected. On startup
+ * the log is scanned, a torn tail is cut off, and everything after the checkpoint is
+ * projected before the application takes traffic; re-inserting a message that was stored
+ * before the checkpoint was written is harmless.
+ * <p>
+ * Messages that are in the log but not yet in the table are indexed by room and decoded
+ * straight from the mapped segments, so history reads never miss them.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.messages.commit-log.enabled", havingValue = "true")
+@DependsOn("entityManagerFactory") // The startup replay writes to the schema Hibernate maintains
+public class MessageCommitLog {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageCommitLog.class);
+    
+    private static final String CHECKPOINT_FILE = "projected.checkpoint";
+    
+    private static final long RETRY_DELAY_MS = 1000;
+    
+    @Value("${chat.messages.commit-log.dir:data/commit-log}")
+    private String dir;
+    
+    @Value("${chat.messages.commit-log.segment-size-bytes:67108864}")
+    private int segmentSizeBytes;
+    
+    @Value("${chat.messages.commit-log.sync-interval-ms:100}")
+    private long syncIntervalMs;
+    
+    @Value("${chat.messages.commit-log.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${chat.messages.commit-log.projection-interval-ms:50}")
+    private long projectionIntervalMs;
+    
+    @Value("${chat.messages.commit-log.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+    
+    @Autowired
+    private MessageBatchWriter batchWriter;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Path directory;
+    
+    // Keyed by base offset
+    private final ConcurrentNavigableMap<Long, CommitLogSegment> segments = new ConcurrentSkipListMap<>();
+    
+    // Log offsets of the records not yet projected, by room
+    private final Map<Long, NavigableSet<Long>> unprojected = new ConcurrentHashMap<>();
+    
+    private final Object appendLock = new Object();
+    
+    private CommitLogSegment activeSegment;
+    
+    // End of the last complete record; everything below it is readable
+    private volatile long committedOffset;
+    
+    private volatile long projectedOffset;
+    
+    // Guarded by sync()
+    private long syncedOffset;
+    
+    private Timer appendTimer;
+    
+    private Thread projector;
+    
+    private ScheduledExecutorService syncer;
+    
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        long checkpoint = readCheckpoint();
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(p -> p.toString().endsWith(CommitLogSegment.SUFFIX)).sorted().toList()) {
+                CommitLogSegment segment = CommitLogSegment.open(path);
+                segments.put(segment.getBaseOffset(), segment);
+            }
+        }
+        
+        int records = 0;
+        for (CommitLogSegment segment : segments.values()) {
+            records += segment.recover();
+        }
+        if (segments.isEmpty()) {
+            CommitLogSegment segment = CommitLogSegment.create(directory, checkpoint, segmentSizeBytes);
+            segments.put(segment.getBaseOffset(), segment);
+        }
+        activeSegment = segments.lastEntry().getValue();
+        committedOffset = activeSegment.getBaseOffset() + activeSegment.getWritePosition();
+        projectedOffset = Math.min(Math.max(checkpoint, segments.firstKey()), committedOffset);
+        syncedOffset = committedOffset;
+        
+        // Sequence numbers are seeded from the table, so the tail must be in it before the first send
+        long replayBytes = committedOffset - projectedOffset;
+        while (projectBatch()) {
+            // Replays until the table has caught up with the log
+        }
+        logger.info("Commit log opened with {} segments and {} records, replayed {} bytes into the messages table",
+                segments.size(), records, replayBytes);
+        
+        appendTimer = Timer.builder("chat.commitlog.append")
+                .description("Time to append a chat message to the commit log")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("chat.commitlog.unprojected", this, log -> log.committedOffset - log.projectedOffset)
+                .description("Bytes of the commit log not yet projected into the messages table")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.commitlog.segments", segments, Map::size)
+                .description("Commit log segment files on disk")
+                .register(meterRegistry);
+        
+        running = true;
+        projector = new Thread(this::runProjectionLoop, "commit-log-projector");
+        projector.setDaemon(true);
+        projector.start();
+        
+        if (syncIntervalMs > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "commit-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Appends a fully built message, with its ID and seq assigned, to the log.
+     */
+    public void append(MessageDto message) {
+        if (!running) {
+            throw new RuntimeException("Message persistence is shutting down");
+        }
+        
+        long start = System.nanoTime();
+        byte[] payload = MessageRecord.encode(message);
+        if (CommitLogSegment.HEADER_SIZE + payload.length > segmentSizeBytes) {
+            throw new RuntimeException("Message is too large");
+        }
+        int crc = CommitLogSegment.crc(payload);
+        
+        synchronized (appendLock) {
+            int position = activeSegment.append(payload, crc);
+            if (position < 0) {
+                activeSegment = roll();
+                position = activeSegment.append(payload, crc);
+            }
+            int end = position + CommitLogSegment.HEADER_SIZE + payload.length;
+            if (syncIntervalMs == 0) {
+                activeSegment.force(position, end);
+            }
+            
+            long offset = activeSegment.getBaseOffset() + position;
+            unprojected.compute(message.getRoomId(), (roomId, offsets) -> {
+                NavigableSet<Long> pending = offsets != null ? offsets : new ConcurrentSkipListSet<>();
+                pending.add(offset);
+                return pending;
+            });
+            committedOffset = activeSegment.getBaseOffset() + end;
+        }
+        appendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Returns messages for the room that are in the log but not yet in the messages table.
+     */
+    public List<MessageDto> getUnprojected(Long roomId) {
+        NavigableSet<Long> offsets = unprojected.get(roomId);
+        if (offsets == null) {
+            return List.of();
+        }
+        
+        List<MessageDto> messages = new ArrayList<>();
+        for (long offset : offsets) {
+            // A missing segment was deleted after its records were projected
+            Map.Entry<Long, CommitLogSegment> entry = segments.floorEntry(offset);
+            if (entry != null) {
+                messages.add(entry.getValue().read((int) (offset - entry.getKey())));
+            }
+        }
+        return messages;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            projector.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        
+        sync();
+        for (CommitLogSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close commit log segment {}", segment.getBaseOffset(), e);
+            }
+        }
+        logger.info("Commit log stopped, {} bytes left to replay on the next start", committedOffset - projectedOffset);
+    }
+    
+    private CommitLogSegment roll() {
+        CommitLogSegment full = activeSegment;
+        try {
+            CommitLogSegment next = CommitLogSegment.create(directory,
+                    full.getBaseOffset() + full.getSize(), segmentSizeBytes);
+            segments.put(next.getBaseOffset(), next);
+            return next;
+        } catch (IOException e) {
+            logger.error("Failed to create a commit log segment", e);
+            throw new ServerBusyException();
+        }
+    }
+    
+    private void runProjectionLoop() {
+        while (running || projectedOffset < committedOffset) {
+            try {
+                if (!projectBatch()) {
+                    Thread.sleep(projectionIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (DataAccessResourceFailureException | TransientDataAccessException | RecoverableDataAccessException e) {
+                // The records stay in the log; retry once the database is back
+                logger.warn("Database unavailable, commit log projection paused: {}", e.getMessage());
+                if (!backOff()) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // Same batch next time, so do not spin on a failure that keeps recurring
+                logger.error("Unexpected error in commit log projector", e);
+                if (!backOff()) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    private static boolean backOff() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Inserts up to one batch of records after the projected offset into the messages table.
+     *
+     * @return whether there was anything to project
+     */
+    private boolean projectBatch() {
+        long end = committedOffset;
+        long offset = projectedOffset;
+        if (offset >= end) {
+            return false;
+        }
+        
+        List<MessageDto> batch = new ArrayList<>(batchSize);
+        List<Long> offsets = new ArrayList<>(batchSize);
+        while (offset < end && batch.size() < batchSize) {
+            CommitLogSegment segment = segments.floorEntry(offset).getValue();
+            int position = (int) (offset - segment.getBaseOffset());
+            int length = segment.recordLength(position);
+            if (length == 0) {
+                // The log rolled over here; the rest of this segment is unused
+                offset = segments.higherKey(segment.getBaseOffset());
+                continue;
+            }
+            batch.add(segment.read(position));
+            offsets.add(offset);
+            offset += CommitLogSegment.HEADER_SIZE + length;
+        }
+        
+        batchWriter.insert(batch);
+        
+        for (int i = 0; i < batch.size(); i++) {
+            Long recordOffset = offsets.get(i);
+            unprojected.computeIfPresent(batch.get(i).getRoomId(), (roomId, pending) -> {
+                pending.remove(recordOffset);
+                return pending.isEmpty() ? null : pending;
+            });
+        }
+        projectedOffset = offset;
+        writeCheckpoint(offset);
+        deleteProjectedSegments(offset);
+        return true;
+    }
+    
+    private void deleteProjectedSegments(long projected) {
+        for (CommitLogSegment segment : segments.values()) {
+            // A segment is done once projection has moved on to the next one
+            Long next = segments.higherKey(segment.getBaseOffset());
+            if (next == null || next > projected) {
+                return;
+            }
+            segments.remove(segment.getBaseOffset());
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                logger.warn("Failed to delete commit log segment {}", segment.getBaseOffset(), e);
+            }
+        }
+    }
+    
+    private synchronized void sync() {
+        long target = committedOffset;
+        if (target <= syncedOffset) {
+            return;
+        }
+        
+        for (CommitLogSegment segment : segments.values()) {
+            long base = segment.getBaseOffset();
+            if (base >= target) {
+                break;
+            }
+            if (base + segment.getSize() <= syncedOffset) {
+                continue;
+            }
+            segment.force((int) Math.max(0, syncedOffset - base), (int) Math.min(segment.getSize(), target - base));
+        }
+        syncedOffset = target;
+    }
+    
+    private long readCheckpoint() throws IOException {
+        try {
+            return Long.parseLong(Files.readString(directory.resolve(CHECKPOINT_FILE)).trim());
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+    
+    private void writeCheckpoint(long offset) {
+        // Not synced: a stale checkpoint only makes the next start re-insert a few messages
+        try {
+            Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(temp, Long.toString(offset));
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to write the commit log checkpoint", e);
+        }
+    }
+}
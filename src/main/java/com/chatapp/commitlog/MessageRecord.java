@@ -0,0 +1,73 @@
+package com.chatapp.commitlog;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.entity.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary layout of a chat message in the commit log:
+ * <pre>
+ * long id, long roomId, long userId, long seq,
+ * long createdAt epoch second, int createdAt nano, byte message type ordinal,
+ * short username length, username UTF-8, int content length, content UTF-8
+ * </pre>
+ * Records are decoded with absolute reads, so decoding straight from a mapped segment
+ * copies nothing but the strings.
+ */
+final class MessageRecord {
+    
+    private static final int FIXED_SIZE = 8 * 5 + 4 + 1 + 2 + 4;
+    
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+    
+    private MessageRecord() {
+    }
+    
+    static byte[] encode(MessageDto message) {
+        byte[] username = message.getUsername() != null
+                ? message.getUsername().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        LocalDateTime createdAt = message.getCreatedAt();
+        
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_SIZE + username.length + content.length);
+        buffer.putLong(message.getId());
+        buffer.putLong(message.getRoomId());
+        buffer.putLong(message.getUserId());
+        buffer.putLong(message.getSeq());
+        buffer.putLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(createdAt.getNano());
+        buffer.put((byte) message.getMessageType().ordinal());
+        buffer.putShort((short) username.length);
+        buffer.put(username);
+        buffer.putInt(content.length);
+        buffer.put(content);
+        return buffer.array();
+    }
+    
+    static MessageDto decode(ByteBuffer buffer, int position) {
+        MessageDto message = new MessageDto();
+        message.setId(buffer.getLong(position));
+        message.setRoomId(buffer.getLong(position + 8));
+        message.setUserId(buffer.getLong(position + 16));
+        message.setSeq(buffer.getLong(position + 24));
+        message.setCreatedAt(LocalDateTime.ofEpochSecond(
+                buffer.getLong(position + 32), buffer.getInt(position + 40), ZoneOffset.UTC));
+        message.setMessageType(TYPES[buffer.get(position + 44)]);
+        
+        int usernameLength = buffer.getShort(position + 45);
+        message.setUsername(readString(buffer, position + 47, usernameLength));
+        int contentPosition = position + 47 + usernameLength;
+        message.setContent(readString(buffer, contentPosition + 4, buffer.getInt(contentPosition)));
+        return message;
+    }
+    
+    private static String readString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,22 @@
+package com.chatapp.config;
+
+import com.chatapp.id.IdGenerator;
+import com.chatapp.id.SnowflakeIdGenerator;
+import com.chatapp.id.TimeOrderedIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+    
+    @Bean
+    public IdGenerator idGenerator(@Value("${chat.id.node-id:0}") long nodeId) {
+        IdGenerator idGenerator = new SnowflakeIdGenerator(nodeId);
+        
+        // Entities annotated with @TimeOrderedId draw from the same sequence
+        TimeOrderedIdGenerator.install(idGenerator);
+        
+        return idGenerator;
+    }
+}
@@ -0,0 +1,36 @@
+package com.chatapp.config;
+
+import com.chatapp.websocket.SessionSendMetrics;
+import com.chatapp.websocket.SlowConsumerPolicy;
+import com.chatapp.websocket.SlowConsumerSubProtocolWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+/**
+ * Broker infrastructure, used in place of {@code @EnableWebSocketMessageBroker} so the
+ * sub-protocol handler can apply the slow-consumer policy to sessions. Broker and
+ * endpoint settings stay in {@link WebSocketConfig}.
+ */
+@Configuration
+public class WebSocketBrokerConfig extends DelegatingWebSocketMessageBrokerConfiguration {
+    
+    @Autowired
+    private SessionSendMetrics sessionSendMetrics;
+    
+    @Value("${chat.websocket.slow-consumer-policy:disconnect}")
+    private String slowConsumerPolicy;
+    
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                        AbstractSubscribableChannel clientOutboundChannel) {
+        SlowConsumerPolicy policy = SlowConsumerPolicy.valueOf(slowConsumerPolicy.trim().toUpperCase().replace('-', '_'));
+        return new SlowConsumerSubProtocolWebSocketHandler(
+                clientInboundChannel, clientOutboundChannel, policy, sessionSendMetrics);
+    }
+}
@@ -1,27 +1,129 @@
 package com.chatapp.config;
 
+import com.chatapp.latency.MessageArrivalInterceptor;
+import com.chatapp.security.StompAuthChannelInterceptor;
+import com.chatapp.websocket.BroadcastMetricsInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+    
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    
+    @Autowired
+    private BroadcastMetricsInterceptor broadcastMetricsInterceptor;
+    
+    @Autowired
+    private MessageArrivalInterceptor messageArrivalInterceptor;
+    
+    // Channel executors: 0 keeps Spring's default for that setting
+    @Value("${chat.websocket.inbound.core-pool-size:0}")
+    private int inboundCorePoolSize;
+    
+    @Value("${chat.websocket.inbound.max-pool-size:0}")
+    private int inboundMaxPoolSize;
+    
+    @Value("${chat.websocket.inbound.queue-capacity:0}")
+    private int inboundQueueCapacity;
+    
+    @Value("${chat.websocket.outbound.core-pool-size:0}")
+    private int outboundCorePoolSize;
+    
+    @Value("${chat.websocket.outbound.max-pool-size:0}")
+    private int outboundMaxPoolSize;
+    
+    @Value("${chat.websocket.outbound.queue-capacity:0}")
+    private int outboundQueueCapacity;
+    
+    @Value("${chat.websocket.virtual-threads:false}")
+    private boolean virtualThreads;
+    
+    // Per-session send limits; beyond them the slow-consumer policy applies
+    @Value("${chat.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+    
+    @Value("${chat.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+    
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // Installs the outbound hook that RoomFanout's per-session ordered channels rely on
+        config.setPreservePublishOrder(true);
     }
     
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+        // Handle each client's frames in the order they were sent
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
+    
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        configureExecutor(registration, "clientInboundChannel-",
+                inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity);
+        registration.interceptors(messageArrivalInterceptor, stompAuthChannelInterceptor);
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        configureExecutor(registration, "clientOutboundChannel-",
+                outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity);
+        registration.interceptors(broadcastMetricsInterceptor);
+    }
+    
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+    
+    private void configureExecutor(ChannelRegistration registration, String threadNamePrefix,
+                                   int corePoolSize, int maxPoolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        executor.setAllowCoreThreadTimeOut(true);
+        
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            // Virtual threads are cheap to park, so let the pool grow instead of queueing
+            executor.setThreadFactory(new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+            executor.setMaxPoolSize(Integer.MAX_VALUE);
+            executor.setQueueCapacity(0);
+        } else if (virtualThreads) {
+            logger.warn("Virtual threads need Java 21+, running {} on platform threads", threadNamePrefix);
+        }
+        
+        TaskExecutorRegistration taskExecutor = registration.taskExecutor(executor);
+        if (corePoolSize > 0) {
+            taskExecutor.corePoolSize(corePoolSize);
+        }
+        if (maxPoolSize > 0) {
+            taskExecutor.maxPoolSize(maxPoolSize);
+        }
+        if (queueCapacity > 0) {
+            taskExecutor.queueCapacity(queueCapacity);
+        }
+    }
 } 
\ No newline at end of file
@@ -2,7 +2,7 @@ package com.chatapp.controller;
 
 import com.chatapp.dto.ChatRoomDto;
 import com.chatapp.service.ChatRoomService;
-import com.chatapp.service.UserService;
+import com.chatapp.websocket.PresenceRegistry;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -18,11 +18,13 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class ChatRoomController {
     
+    private static final int MAX_SEARCH_LIMIT = 50;
+    
     @Autowired
     private ChatRoomService chatRoomService;
     
     @Autowired
-    private UserService userService;
+    private PresenceRegistry presenceRegistry;
     
     @PostMapping
     public ResponseEntity<?> createRoom(@Valid @RequestBody ChatRoomDto roomDto) {
@@ -52,27 +54,28 @@ public class ChatRoomController {
     public ResponseEntity<List<ChatRoomDto>> getMyRooms() {
         try {
             String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            return userService.findByUsername(username)
-                    .map(user -> {
-                        List<ChatRoomDto> rooms = chatRoomService.getRoomsByUserId(user.getId());
-                        return ResponseEntity.ok(rooms);
-                    })
-                    .orElse(ResponseEntity.notFound().build());
+            List<ChatRoomDto> rooms = chatRoomService.getRoomsByUsername(username);
+            return ResponseEntity.ok(rooms);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
     
     @GetMapping("/{roomId}")
-    public ResponseEntity<ChatRoomDto> getRoomById(@PathVariable Long roomId) {
-        return chatRoomService.getRoomById(roomId)
+    public ResponseEntity<ChatRoomDto> getRoomById(
+            @PathVariable Long roomId,
+            @RequestParam(defaultValue = "false") boolean includeParticipants) {
+        return chatRoomService.getRoomById(roomId, includeParticipants)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @GetMapping("/search")
-    public ResponseEntity<List<ChatRoomDto>> searchRooms(@RequestParam String keyword) {
-        List<ChatRoomDto> rooms = chatRoomService.searchRooms(keyword);
+    public ResponseEntity<List<ChatRoomDto>> searchRooms(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "20") int limit) {
+        int resultLimit = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        List<ChatRoomDto> rooms = chatRoomService.searchRooms(keyword, resultLimit);
         return ResponseEntity.ok(rooms);
     }
     
@@ -115,4 +118,10 @@ public class ChatRoomController {
         List<String> participants = chatRoomService.getRoomParticipants(roomId);
         return ResponseEntity.ok(participants);
     }
+    
+    // Users with a live session in the room on this node, answered from memory; /participants lists members
+    @GetMapping("/{roomId}/online")
+    public ResponseEntity<List<String>> getOnlineUsers(@PathVariable Long roomId) {
+        return ResponseEntity.ok(presenceRegistry.getOnlineUsernames(roomId));
+    }
 } 
\ No newline at end of file
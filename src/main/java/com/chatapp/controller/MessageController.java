@@ -1,8 +1,11 @@
 package com.chatapp.controller;
 
+import com.chatapp.dto.MessageCursor;
 import com.chatapp.dto.MessageDto;
+import com.chatapp.dto.MessageHistoryDto;
 import com.chatapp.service.MessageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +19,8 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class MessageController {
     
+    private static final int MAX_HISTORY_LIMIT = 200;
+    
     @Autowired
     private MessageService messageService;
     
@@ -29,12 +34,71 @@ public class MessageController {
         return ResponseEntity.ok(messages);
     }
     
+    @GetMapping("/room/{roomId}/history")
+    public ResponseEntity<?> getMessageHistory(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "50") int limit) {
+        
+        try {
+            Long beforeId = MessageCursor.decode(before);
+            int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+            
+            Slice<MessageDto> slice = messageService.getMessagesBefore(roomId, beforeId, pageSize);
+            List<MessageDto> messages = slice.getContent();
+            
+            String nextCursor = slice.hasNext() && !messages.isEmpty()
+                    ? MessageCursor.encode(messages.get(messages.size() - 1).getId())
+                    : null;
+            
+            return ResponseEntity.ok(new MessageHistoryDto(messages, nextCursor, slice.hasNext()));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Messages after the given room sequence number, oldest first, for clients resuming
+     * after a reconnect. A full page means more may follow.
+     */
+    @GetMapping("/room/{roomId}/resume")
+    public ResponseEntity<?> resumeMessages(
+            @PathVariable Long roomId,
+            @RequestParam long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        
+        if (after < 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Sequence number must not be negative");
+            return ResponseEntity.badRequest().body(error);
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+        return ResponseEntity.ok(messageService.getMessagesAfterSeq(roomId, after, pageSize));
+    }
+    
     @GetMapping("/room/{roomId}/search")
     public ResponseEntity<List<MessageDto>> searchMessagesInRoom(
             @PathVariable Long roomId,
-            @RequestParam String keyword) {
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        
+        List<MessageDto> messages = messageService.searchMessagesInRoom(keyword, roomId,
+                Math.max(0, page), Math.max(1, Math.min(size, MAX_HISTORY_LIMIT)));
+        return ResponseEntity.ok(messages);
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<List<MessageDto>> searchMyMessages(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
         
-        List<MessageDto> messages = messageService.searchMessagesInRoom(keyword, roomId);
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        List<MessageDto> messages = messageService.searchMessagesForUser(keyword, username,
+                Math.max(0, page), Math.max(1, Math.min(size, MAX_HISTORY_LIMIT)));
         return ResponseEntity.ok(messages);
     }
     
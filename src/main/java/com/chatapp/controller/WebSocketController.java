@@ -1,47 +1,81 @@
 package com.chatapp.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.handler.annotation.support.MethodArgumentNotValidException;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
+import org.springframework.validation.FieldError;
 
 import com.chatapp.dto.MessageDto;
+import com.chatapp.latency.MessageArrivalInterceptor;
+import com.chatapp.latency.MessageLatencyTracker;
+import com.chatapp.latency.MessageTrace;
+import com.chatapp.ratelimit.MessageRateLimiter;
+import com.chatapp.ratelimit.RateLimitExceededException;
+import com.chatapp.security.ChatPrincipal;
+import com.chatapp.websocket.EncodedPayload;
+import com.chatapp.websocket.PresenceRegistry;
+import com.chatapp.websocket.RoomBroadcaster;
 import com.chatapp.service.MessageService;
+import com.chatapp.service.RoomNotFoundException;
+import com.chatapp.service.ServerBusyException;
+import jakarta.validation.Valid;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Controller
 public class WebSocketController {
     
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketController.class);
+    
     @Autowired
     private MessageService messageService;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RoomBroadcaster roomBroadcaster;
+    
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+    
+    @Autowired
+    private MessageLatencyTracker latencyTracker;
+    
+    @Autowired
+    private MessageRateLimiter rateLimiter;
+    
+    // Opt-in firehose of every room's traffic; off by default so fan-out scales with room size
+    @Value("${chat.websocket.global-feed.enabled:false}")
+    private boolean globalFeedEnabled;
     
     @MessageMapping("/chat.sendMessage")
-    @SendTo("/topic/public")
-    public MessageDto sendMessage(@Payload MessageDto messageDto, SimpMessageHeaderAccessor headerAccessor) {
-        String username = "Anonymous";
-        var user = headerAccessor.getUser();
-        if (user != null) {
-            var userName = user.getName();
-            if (userName != null) {
-                username = userName;
-            }
+    public void sendMessage(@Valid @Payload MessageDto messageDto, SimpMessageHeaderAccessor headerAccessor) {
+        // Set by StompAuthChannelInterceptor when the session connected
+        if (!(headerAccessor.getUser() instanceof ChatPrincipal principal)) {
+            throw new RuntimeException("Not authenticated");
         }
-        MessageDto savedMessage = messageService.saveMessage(messageDto, username);
+        // Rejected before anything is persisted or fanned out
+        rateLimiter.acquire(principal.getUserId(), messageDto.getRoomId());
         
-        // Send to specific room
-        messagingTemplate.convertAndSend("/topic/room." + messageDto.getRoomId(), savedMessage);
+        MessageTrace trace = latencyTracker.start(
+                (Long) headerAccessor.getHeader(MessageArrivalInterceptor.RECEIVED_AT_HEADER));
         
-        return savedMessage;
+        // Sent to the room while its sequence is held, so subscribers see seq order
+        messageService.saveMessage(messageDto, principal.getUserId(), principal.getName(), savedMessage -> {
+            trace.persisted();
+            sendToRoom(savedMessage.getRoomId(), savedMessage, trace);
+        });
     }
     
     @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
-    public MessageDto addUser(@Payload MessageDto messageDto, SimpMessageHeaderAccessor headerAccessor) {
+    public void addUser(@Payload MessageDto messageDto, SimpMessageHeaderAccessor headerAccessor) {
         // Add username in web socket session
         var sessionAttributes = headerAccessor.getSessionAttributes();
         if (sessionAttributes != null) {
@@ -49,35 +83,70 @@ public class WebSocketController {
             sessionAttributes.put("roomId", messageDto.getRoomId());
         }
         
-        // Send join message to room
-        MessageDto joinMessage = new MessageDto();
-        joinMessage.setContent(messageDto.getUsername() + " joined the chat!");
-        joinMessage.setUsername("System");
-        joinMessage.setMessageType(com.chatapp.entity.Message.MessageType.SYSTEM);
-        
-        messagingTemplate.convertAndSend("/topic/room." + messageDto.getRoomId(), joinMessage);
-        
-        return joinMessage;
+        // Presence is tracked from the room subscription and announced in coalesced deltas
     }
     
     @MessageMapping("/chat.leaveUser")
     public void leaveUser(SimpMessageHeaderAccessor headerAccessor) {
-        String username = null;
         Long roomId = null;
         
         var sessionAttributes = headerAccessor.getSessionAttributes();
         if (sessionAttributes != null) {
-            username = (String) sessionAttributes.get("username");
             roomId = (Long) sessionAttributes.get("roomId");
         }
         
-        if (username != null && roomId != null) {
-            MessageDto leaveMessage = new MessageDto();
-            leaveMessage.setContent(username + " left the chat!");
-            leaveMessage.setUsername("System");
-            leaveMessage.setMessageType(com.chatapp.entity.Message.MessageType.SYSTEM);
-            
-            messagingTemplate.convertAndSend("/topic/room." + roomId, leaveMessage);
+        if (roomId != null && headerAccessor.getSessionId() != null) {
+            presenceRegistry.leave(headerAccessor.getSessionId(), roomId);
+        }
+    }
+    
+    // Checked before the message takes a sequence number; the write-behind and commit log
+    // paths insert with plain JDBC, so nothing downstream would reject it
+    @MessageExceptionHandler
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, Object> handleInvalidMessage(MethodArgumentNotValidException e) {
+        FieldError fieldError = e.getBindingResult() != null ? e.getBindingResult().getFieldError() : null;
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", fieldError != null ? fieldError.getDefaultMessage() : "Invalid message");
+        return error;
+    }
+    
+    @MessageExceptionHandler
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, Object> handleRateLimitExceeded(RateLimitExceededException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        error.put("scope", e.getScope());
+        error.put("retryAfterMs", e.getRetryAfterMs());
+        return error;
+    }
+    
+    @MessageExceptionHandler({RoomNotFoundException.class, ServerBusyException.class})
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, Object> handleRejectedMessage(RuntimeException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return error;
+    }
+    
+    // Anything else is a server fault; its message may describe internals, so the sender gets a generic one
+    @MessageExceptionHandler
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, Object> handleSendFailure(RuntimeException e) {
+        logger.error("Failed to handle a chat message", e);
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "Message could not be sent");
+        return error;
+    }
+    
+    private void sendToRoom(Long roomId, MessageDto message, MessageTrace trace) {
+        // Serialized once and shared by every subscriber, including the global feed
+        EncodedPayload payload = roomBroadcaster.encode(message);
+        trace.converted();
+        roomBroadcaster.broadcastToRoom(roomId, payload);
+        if (globalFeedEnabled) {
+            roomBroadcaster.send("/topic/public", payload);
         }
+        trace.delivered(roomId);
     }
 } 
\ No newline at end of file
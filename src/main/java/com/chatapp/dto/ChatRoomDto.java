@@ -1,5 +1,6 @@
 package com.chatapp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
@@ -21,9 +22,13 @@ public class ChatRoomDto {
     private Integer maxParticipants;
     private Long createdById;
     private String createdByUsername;
-    private Set<String> participants;
+    private Integer participantCount;
     private Long messageCount;
     
+    // Only populated when participant detail is requested explicitly
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Set<String> participants;
+    
     // Constructors
     public ChatRoomDto() {}
     
@@ -32,6 +37,22 @@ public class ChatRoomDto {
         this.description = description;
     }
     
+    // Used by the room summary projections in ChatRoomRepository
+    public ChatRoomDto(Long id, String name, String description, LocalDateTime createdAt, boolean isPrivate,
+                       Integer maxParticipants, Long createdById, String createdByUsername,
+                       Integer participantCount, Long messageCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.createdAt = createdAt;
+        this.isPrivate = isPrivate;
+        this.maxParticipants = maxParticipants;
+        this.createdById = createdById;
+        this.createdByUsername = createdByUsername;
+        this.participantCount = participantCount;
+        this.messageCount = messageCount;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -97,6 +118,14 @@ public class ChatRoomDto {
         this.createdByUsername = createdByUsername;
     }
     
+    public Integer getParticipantCount() {
+        return participantCount;
+    }
+    
+    public void setParticipantCount(Integer participantCount) {
+        this.participantCount = participantCount;
+    }
+    
     public Set<String> getParticipants() {
         return participants;
     }
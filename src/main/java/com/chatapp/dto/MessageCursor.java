@@ -0,0 +1,37 @@
+package com.chatapp.dto;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque history cursor. Clients pass it back unchanged; internally it wraps the
+ * ID of the oldest message already returned.
+ */
+public final class MessageCursor {
+    
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    private MessageCursor() {}
+    
+    public static String encode(Long messageId) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(messageId).array());
+    }
+    
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (bytes.length != Long.BYTES) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
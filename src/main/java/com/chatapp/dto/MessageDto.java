@@ -1,6 +1,8 @@
 package com.chatapp.dto;
 
 import com.chatapp.entity.Message;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -8,6 +10,8 @@ import java.time.LocalDateTime;
 
 public class MessageDto {
     
+    // Snowflake IDs exceed 2^53, which JavaScript numbers cannot hold exactly
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
     
     @NotBlank(message = "Message content is required")
@@ -23,6 +27,7 @@ public class MessageDto {
     private Message.MessageType messageType;
     private boolean isEdited;
     private LocalDateTime editedAt;
+    private Long seq;
     
     // Constructors
     public MessageDto() {}
@@ -42,6 +47,7 @@ public class MessageDto {
         this.messageType = message.getMessageType();
         this.isEdited = message.isEdited();
         this.editedAt = message.getEditedAt();
+        this.seq = message.getSeq();
     }
     
     // Getters and Setters
@@ -116,4 +122,12 @@ public class MessageDto {
     public void setEditedAt(LocalDateTime editedAt) {
         this.editedAt = editedAt;
     }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
 } 
\ No newline at end of file
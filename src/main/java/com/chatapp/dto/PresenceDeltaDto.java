@@ -0,0 +1,59 @@
+package com.chatapp.dto;
+
+import java.util.List;
+
+/**
+ * Changes to a room's online users since the previous delta, published on
+ * {@code /topic/room.{id}.presence}. A user who joined and left again within one
+ * interval appears in neither list.
+ */
+public class PresenceDeltaDto {
+    
+    private Long roomId;
+    private List<String> joined;
+    private List<String> left;
+    private int onlineCount;
+    
+    // Constructors
+    public PresenceDeltaDto() {}
+    
+    public PresenceDeltaDto(Long roomId, List<String> joined, List<String> left, int onlineCount) {
+        this.roomId = roomId;
+        this.joined = joined;
+        this.left = left;
+        this.onlineCount = onlineCount;
+    }
+    
+    // Getters and Setters
+    public Long getRoomId() {
+        return roomId;
+    }
+    
+    public void setRoomId(Long roomId) {
+        this.roomId = roomId;
+    }
+    
+    public List<String> getJoined() {
+        return joined;
+    }
+    
+    public void setJoined(List<String> joined) {
+        this.joined = joined;
+    }
+    
+    public List<String> getLeft() {
+        return left;
+    }
+    
+    public void setLeft(List<String> left) {
+        this.left = left;
+    }
+    
+    public int getOnlineCount() {
+        return onlineCount;
+    }
+    
+    public void setOnlineCount(int onlineCount) {
+        this.onlineCount = onlineCount;
+    }
+}
@@ -3,6 +3,7 @@ package com.chatapp.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -33,6 +34,16 @@ public class ChatRoom {
     @Column(name = "max_participants")
     private Integer maxParticipants;
     
+    @Column(name = "message_count", nullable = false)
+    @ColumnDefault("0")
+    private long messageCount = 0;
+    
+    // Only maintained when a cluster relay is configured, by queries in ChatRoomRepository; saving
+    // a loaded room must not write back a stale value, so it is never updated through the entity
+    @Column(name = "last_seq", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long lastSeq = 0;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by")
     private User createdBy;
@@ -107,6 +118,18 @@ public class ChatRoom {
         this.maxParticipants = maxParticipants;
     }
     
+    public long getMessageCount() {
+        return messageCount;
+    }
+    
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+    
+    public long getLastSeq() {
+        return lastSeq;
+    }
+    
     public User getCreatedBy() {
         return createdBy;
     }
@@ -1,16 +1,20 @@
 package com.chatapp.entity;
 
+import com.chatapp.id.TimeOrderedId;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    @Index(name = "idx_messages_room_id_id", columnList = "room_id, id"),
+    @Index(name = "idx_messages_room_id_seq", columnList = "room_id, seq")
+})
 public class Message {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
     
     @NotBlank(message = "Message content is required")
@@ -39,6 +43,10 @@ public class Message {
     @Column(name = "edited_at")
     private LocalDateTime editedAt;
     
+    // Position in the room, assigned by RoomSequencer; null for messages stored before rooms were sequenced
+    @Column(name = "seq")
+    private Long seq;
+    
     public enum MessageType {
         TEXT, IMAGE, FILE, SYSTEM
     }
@@ -118,6 +126,14 @@ public class Message {
         this.editedAt = editedAt;
     }
     
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,10 @@
+package com.chatapp.id;
+
+/**
+ * Source of application-assigned primary keys. Implementations must be thread-safe
+ * and return strictly increasing values, so that IDs can double as ordering keys.
+ */
+public interface IdGenerator {
+    
+    long nextId();
+}
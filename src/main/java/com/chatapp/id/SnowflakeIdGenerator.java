@@ -0,0 +1,78 @@
+package com.chatapp.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style 64-bit ID generator: 41 bits of milliseconds since {@link #EPOCH},
+ * 10 bits of node ID and a 12-bit per-millisecond sequence. IDs from one node are
+ * strictly increasing; IDs from different nodes are ordered by time to the millisecond.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH = 1704067200000L;
+    
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    
+    private final long nodeId;
+    
+    // Last issued (timestamp << SEQUENCE_BITS | sequence), updated with CAS
+    private final AtomicLong state = new AtomicLong();
+    
+    public SnowflakeIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+    
+    @Override
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - EPOCH;
+            
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & MAX_SEQUENCE) < MAX_SEQUENCE) {
+                // Same millisecond, or the clock went backwards: keep counting on the last timestamp
+                next = current + 1;
+            } else {
+                // Sequence exhausted: borrow the next millisecond instead of spinning
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+            
+            if (state.compareAndSet(current, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (nodeId << SEQUENCE_BITS)
+                        | (next & MAX_SEQUENCE);
+            }
+        }
+    }
+    
+    public long getNodeId() {
+        return nodeId;
+    }
+    
+    /**
+     * Returns the creation time encoded in a Snowflake ID, in epoch milliseconds.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+    
+    /**
+     * Returns the smallest ID that could be issued at the given epoch millisecond,
+     * which is useful as an exclusive bound for time-based range queries.
+     */
+    public static long lowestIdAt(long epochMillis) {
+        return Math.max(0, epochMillis - EPOCH) << TIMESTAMP_SHIFT;
+    }
+}
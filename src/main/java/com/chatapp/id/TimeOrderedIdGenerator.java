@@ -0,0 +1,28 @@
+package com.chatapp.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Hibernate bridge for {@link TimeOrderedId}. Hibernate instantiates generators itself,
+ * so the Spring-managed {@link IdGenerator} is installed here at startup through
+ * {@link #install(IdGenerator)}. Generating an ID before that fails rather than falling
+ * back to a default node ID, which could collide with another node's IDs.
+ */
+public class TimeOrderedIdGenerator implements IdentifierGenerator {
+    
+    private static volatile IdGenerator delegate;
+    
+    public static void install(IdGenerator idGenerator) {
+        delegate = idGenerator;
+    }
+    
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        IdGenerator idGenerator = delegate;
+        if (idGenerator == null) {
+            throw new IllegalStateException("No IdGenerator installed; IdGeneratorConfig has not run");
+        }
+        return idGenerator.nextId();
+    }
+}
@@ -0,0 +1,97 @@
+package com.chatapp.latency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram: microsecond values are
+ * counted in buckets that are linear below 32 and split every power of two into 32
+ * sub-buckets above, so any recorded value is reported within about 3%. Recording is
+ * one atomic increment; there is no allocation and no lock.
+ * <p>
+ * Values above about 19 hours are counted in the last bucket.
+ */
+class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 5;
+    
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    private static final int MAX_EXPONENT = 36;
+    
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(bucketCount());
+    
+    void recordNanos(long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0, nanos / 1000)));
+    }
+    
+    /**
+     * Adds this histogram's counts to {@code totals}, which must have {@link #bucketCount()} entries.
+     */
+    void addTo(long[] totals) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += counts.get(i);
+        }
+    }
+    
+    static int bucketCount() {
+        return (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    }
+    
+    /**
+     * Returns the value at the given percentile of the counts, in microseconds, as the
+     * highest value of the bucket it falls in; 0 if there are no counts.
+     */
+    static long percentile(long[] totals, double percentile) {
+        long total = count(totals);
+        if (total == 0) {
+            return 0;
+        }
+        
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < totals.length; i++) {
+            seen += totals[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+    
+    static long count(long[] totals) {
+        long total = 0;
+        for (long count : totals) {
+            total += count;
+        }
+        return total;
+    }
+    
+    static long max(long[] totals) {
+        for (int i = totals.length - 1; i >= 0; i--) {
+            if (totals[i] > 0) {
+                return highestValueOf(i);
+            }
+        }
+        return 0;
+    }
+    
+    private static int indexOf(long micros) {
+        long value = Math.min(micros, MAX_VALUE);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+    
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,24 @@
+package com.chatapp.latency;
+
+import java.util.Locale;
+
+/**
+ * Stages of a chat message on its way from the sender's frame to the subscribers.
+ */
+public enum LatencyStage {
+    
+    // Frame arrival until the handler starts: inbound channel queueing and the session's authentication check
+    INBOUND,
+    // Waiting for the room's sequence and storing the message
+    PERSIST,
+    // Serializing the broadcast payload
+    CONVERT,
+    // Handing the payload to the room's subscribers
+    DELIVER,
+    // Frame arrival until delivery
+    TOTAL;
+    
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,35 @@
+package com.chatapp.latency;
+
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stamps SEND frames with the {@link System#nanoTime()} at which they entered the client
+ * inbound channel, before they are queued for a handler thread, so that
+ * {@link MessageLatencyTracker} can measure the time spent before the handler runs.
+ */
+@Component
+public class MessageArrivalInterceptor implements ChannelInterceptor {
+    
+    public static final String RECEIVED_AT_HEADER = "chatReceivedAt";
+    
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+        
+        // Inbound headers are immutable by now; the stamped frame gets a copy
+        StompHeaderAccessor stamped = StompHeaderAccessor.wrap(message);
+        stamped.setHeader(RECEIVED_AT_HEADER, System.nanoTime());
+        return MessageBuilder.createMessage(message.getPayload(), stamped.getMessageHeaders());
+    }
+}
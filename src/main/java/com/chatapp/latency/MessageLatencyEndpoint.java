@@ -0,0 +1,24 @@
+package com.chatapp.latency;
+
+import com.chatapp.latency.MessageLatencyTracker.LatencyReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/chatlatency}: p50, p99 and p99.9 per message stage, and the rooms
+ * whose messages took longest, over the recent windows of {@link MessageLatencyTracker}.
+ */
+@Component
+@Endpoint(id = "chatlatency")
+public class MessageLatencyEndpoint {
+    
+    @Autowired
+    private MessageLatencyTracker latencyTracker;
+    
+    @ReadOperation
+    public LatencyReport latency() {
+        return latencyTracker.report();
+    }
+}
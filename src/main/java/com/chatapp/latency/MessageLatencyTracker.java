@@ -0,0 +1,147 @@
+package com.chatapp.latency;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long chat messages spend in each {@link LatencyStage}, and which rooms saw
+ * the slowest messages. A {@link MessageTrace} is started for every message frame and
+ * records each stage as it completes.
+ * <p>
+ * Measurements go into the current window, and every {@code chat.latency.window-ms} the
+ * current window becomes the previous one. Reports merge both, so they always cover
+ * between one and two windows of recent traffic.
+ */
+@Component
+public class MessageLatencyTracker {
+    
+    @Value("${chat.latency.window-ms:60000}")
+    private long windowMs;
+    
+    @Value("${chat.latency.slowest-rooms:10}")
+    private int slowestRooms;
+    
+    private volatile Window current = new Window();
+    
+    private volatile Window previous = new Window();
+    
+    private ScheduledExecutorService rotator;
+    
+    @PostConstruct
+    public void start() {
+        rotator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "latency-window");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rotator.scheduleAtFixedRate(this::rotate, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rotator.shutdown();
+    }
+    
+    /**
+     * Starts tracing a message whose frame arrived at {@code receivedAtNanos}, a
+     * {@link System#nanoTime()} value, or now if the arrival time is unknown.
+     */
+    public MessageTrace start(Long receivedAtNanos) {
+        return new MessageTrace(this, receivedAtNanos != null ? receivedAtNanos : System.nanoTime());
+    }
+    
+    void record(LatencyStage stage, long nanos) {
+        current.stages[stage.ordinal()].recordNanos(nanos);
+    }
+    
+    void recordRoom(Long roomId, long totalNanos) {
+        RoomLatency room = current.rooms.computeIfAbsent(roomId, id -> new RoomLatency());
+        room.messages.increment();
+        room.maxNanos.accumulateAndGet(totalNanos, Math::max);
+    }
+    
+    private void rotate() {
+        previous = current;
+        current = new Window();
+    }
+    
+    public LatencyReport report() {
+        Window newer = current;
+        Window older = previous;
+        
+        Map<String, StageSummary> stages = new LinkedHashMap<>();
+        for (LatencyStage stage : LatencyStage.values()) {
+            long[] totals = new long[LatencyHistogram.bucketCount()];
+            older.stages[stage.ordinal()].addTo(totals);
+            newer.stages[stage.ordinal()].addTo(totals);
+            stages.put(stage.tag(), new StageSummary(
+                    LatencyHistogram.count(totals),
+                    toMillis(LatencyHistogram.percentile(totals, 50)),
+                    toMillis(LatencyHistogram.percentile(totals, 99)),
+                    toMillis(LatencyHistogram.percentile(totals, 99.9)),
+                    toMillis(LatencyHistogram.max(totals))));
+        }
+        
+        Map<Long, RoomSummary> rooms = new HashMap<>();
+        for (Window window : List.of(older, newer)) {
+            window.rooms.forEach((roomId, latency) -> rooms.merge(roomId,
+                    new RoomSummary(roomId, latency.messages.sum(), latency.maxNanos.get() / 1_000_000.0),
+                    (a, b) -> new RoomSummary(roomId, a.messages() + b.messages(), Math.max(a.maxMs(), b.maxMs()))));
+        }
+        List<RoomSummary> slowest = new ArrayList<>(rooms.values());
+        slowest.sort(Comparator.comparingDouble(RoomSummary::maxMs).reversed());
+        
+        return new LatencyReport(windowMs, stages, slowest.subList(0, Math.min(slowestRooms, slowest.size())));
+    }
+    
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+    
+    /**
+     * One window's stage histograms and per-room maxima.
+     */
+    private static final class Window {
+        
+        private final LatencyHistogram[] stages = new LatencyHistogram[LatencyStage.values().length];
+        
+        private final Map<Long, RoomLatency> rooms = new ConcurrentHashMap<>();
+        
+        Window() {
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyHistogram();
+            }
+        }
+    }
+    
+    private static final class RoomLatency {
+        
+        private final LongAdder messages = new LongAdder();
+        
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+    
+    public record LatencyReport(long windowMs, Map<String, StageSummary> stages, List<RoomSummary> slowestRooms) {
+    }
+    
+    public record StageSummary(long count, double p50Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+    
+    public record RoomSummary(Long roomId, long messages, double maxMs) {
+    }
+}
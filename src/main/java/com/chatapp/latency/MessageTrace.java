@@ -0,0 +1,43 @@
+package com.chatapp.latency;
+
+/**
+ * Times one message through its stages. Each call records the time since the previous
+ * one under the stage it completes; {@link #delivered} also records the total. A trace
+ * is used by one thread at a time.
+ */
+public final class MessageTrace {
+    
+    private final MessageLatencyTracker tracker;
+    
+    private final long receivedAt;
+    
+    private long stageStart;
+    
+    MessageTrace(MessageLatencyTracker tracker, long receivedAt) {
+        this.tracker = tracker;
+        this.receivedAt = receivedAt;
+        this.stageStart = System.nanoTime();
+        tracker.record(LatencyStage.INBOUND, stageStart - receivedAt);
+    }
+    
+    public void persisted() {
+        complete(LatencyStage.PERSIST);
+    }
+    
+    public void converted() {
+        complete(LatencyStage.CONVERT);
+    }
+    
+    public void delivered(Long roomId) {
+        complete(LatencyStage.DELIVER);
+        long total = stageStart - receivedAt;
+        tracker.record(LatencyStage.TOTAL, total);
+        tracker.recordRoom(roomId, total);
+    }
+    
+    private void complete(LatencyStage stage) {
+        long now = System.nanoTime();
+        tracker.record(stage, now - stageStart);
+        stageStart = now;
+    }
+}
@@ -0,0 +1,126 @@
+package com.chatapp.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how fast chat messages are accepted, per sending user and per room, so one
+ * client cannot saturate persistence and fan-out for everyone else.
+ * <p>
+ * The user limit is checked first, so a user over their own limit does not use up the
+ * room's. Each key has a lock-free {@link RateLimiter}; limiters that have refilled
+ * completely are dropped every {@code chat.ratelimit.eviction-interval-ms}, since a new
+ * one behaves the same. A rate of 0 disables that limit.
+ */
+@Component
+public class MessageRateLimiter {
+    
+    @Value("${chat.ratelimit.user.messages-per-second:5}")
+    private double userRate;
+    
+    @Value("${chat.ratelimit.user.burst:10}")
+    private int userBurst;
+    
+    @Value("${chat.ratelimit.room.messages-per-second:50}")
+    private double roomRate;
+    
+    @Value("${chat.ratelimit.room.burst:100}")
+    private int roomBurst;
+    
+    @Value("${chat.ratelimit.eviction-interval-ms:60000}")
+    private long evictionIntervalMs;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<Long, RateLimiter> userLimiters = new ConcurrentHashMap<>();
+    
+    private final Map<Long, RateLimiter> roomLimiters = new ConcurrentHashMap<>();
+    
+    private Counter userRejections;
+    
+    private Counter roomRejections;
+    
+    private ScheduledExecutorService evictor;
+    
+    @PostConstruct
+    public void start() {
+        userRejections = Counter.builder("chat.ratelimit.rejections")
+                .description("Messages rejected by a send rate limit")
+                .tag("scope", "user")
+                .register(meterRegistry);
+        roomRejections = Counter.builder("chat.ratelimit.rejections")
+                .description("Messages rejected by a send rate limit")
+                .tag("scope", "room")
+                .register(meterRegistry);
+        Gauge.builder("chat.ratelimit.limiters", userLimiters, Map::size)
+                .description("Rate limiters held, dropped once they have refilled")
+                .tag("scope", "user")
+                .register(meterRegistry);
+        Gauge.builder("chat.ratelimit.limiters", roomLimiters, Map::size)
+                .description("Rate limiters held, dropped once they have refilled")
+                .tag("scope", "room")
+                .register(meterRegistry);
+        
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ratelimit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleAtFixedRate(this::evictIdle, evictionIntervalMs, evictionIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdown();
+    }
+    
+    /**
+     * Takes a permit from the user's and the room's limits.
+     *
+     * @throws RateLimitExceededException if either limit is exhausted
+     */
+    public void acquire(Long userId, Long roomId) {
+        long now = System.nanoTime();
+        if (userRate > 0 && userId != null) {
+            long wait = userLimiters.computeIfAbsent(userId, id -> new RateLimiter(userRate, userBurst, now))
+                    .tryAcquire(now);
+            if (wait > 0) {
+                userRejections.increment();
+                throw new RateLimitExceededException("user", toRetryMs(wait));
+            }
+        }
+        if (roomRate > 0 && roomId != null) {
+            long wait = roomLimiters.computeIfAbsent(roomId, id -> new RateLimiter(roomRate, roomBurst, now))
+                    .tryAcquire(now);
+            if (wait > 0) {
+                roomRejections.increment();
+                throw new RateLimitExceededException("room", toRetryMs(wait));
+            }
+        }
+    }
+    
+    private void evictIdle() {
+        long now = System.nanoTime();
+        // A sender racing with the removal acquires from the dropped limiter; as it was
+        // full, that lets through at most one extra message
+        userLimiters.values().removeIf(limiter -> limiter.isIdle(now));
+        roomLimiters.values().removeIf(limiter -> limiter.isIdle(now));
+    }
+    
+    private static long toRetryMs(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+    }
+}
@@ -0,0 +1,29 @@
+package com.chatapp.ratelimit;
+
+/**
+ * Thrown when a message is rejected by a send rate limit. It is expected under load,
+ * so it carries no stack trace.
+ */
+public class RateLimitExceededException extends RuntimeException {
+    
+    private final String scope;
+    
+    private final long retryAfterMs;
+    
+    public RateLimitExceededException(String scope, long retryAfterMs) {
+        super("Too many messages, retry in " + retryAfterMs + " ms", null, false, false);
+        this.scope = scope;
+        this.retryAfterMs = retryAfterMs;
+    }
+    
+    /**
+     * The limit that was exceeded: {@code user} or {@code room}.
+     */
+    public String getScope() {
+        return scope;
+    }
+    
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
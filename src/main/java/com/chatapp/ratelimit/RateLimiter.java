@@ -0,0 +1,52 @@
+package com.chatapp.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket implemented as GCRA (generic cell rate algorithm): instead of a token
+ * count and a refill time, it keeps one value, the theoretical arrival time of the next
+ * request, and updates it with a compare-and-set. A bucket of {@code burst} tokens
+ * refilled at {@code permitsPerSecond} allows exactly the same requests.
+ * <p>
+ * Times are {@link System#nanoTime()} values and are only compared by difference.
+ */
+final class RateLimiter {
+    
+    private final long emissionIntervalNanos;
+    
+    private final long toleranceNanos;
+    
+    private final AtomicLong theoreticalArrival;
+    
+    RateLimiter(double permitsPerSecond, int burst, long now) {
+        this.emissionIntervalNanos = (long) (1_000_000_000 / permitsPerSecond);
+        this.toleranceNanos = emissionIntervalNanos * (Math.max(1, burst) - 1);
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+    
+    /**
+     * Takes a permit if one is available.
+     *
+     * @return 0 if the permit was taken, otherwise the nanoseconds until one will be
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long base = arrival - now > 0 ? arrival : now;
+            long wait = base - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, base + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Whether the full burst is available again, so the limiter is indistinguishable from a new one.
+     */
+    boolean isIdle(long now) {
+        return now - theoreticalArrival.get() >= 0;
+    }
+}
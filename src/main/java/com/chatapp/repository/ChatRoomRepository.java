@@ -1,17 +1,25 @@
 package com.chatapp.repository;
 
+import com.chatapp.dto.ChatRoomDto;
 import com.chatapp.entity.ChatRoom;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
     
+    String ROOM_SUMMARY = "SELECT new com.chatapp.dto.ChatRoomDto(r.id, r.name, r.description, r.createdAt, " +
+            "r.isPrivate, r.maxParticipants, c.id, c.username, SIZE(r.participants), r.messageCount) " +
+            "FROM ChatRoom r LEFT JOIN r.createdBy c ";
+    
     Optional<ChatRoom> findByName(String name);
     
     List<ChatRoom> findByIsPrivateFalse();
@@ -25,4 +33,61 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
     List<ChatRoom> findByNameOrDescriptionContaining(@Param("keyword") String keyword);
     
     boolean existsByName(String name);
-} 
\ No newline at end of file
+    
+    @Query(ROOM_SUMMARY + "WHERE r.isPrivate = false")
+    List<ChatRoomDto> findPublicRoomSummaries();
+    
+    @Query(ROOM_SUMMARY + "WHERE r.id IN (SELECT pr.id FROM ChatRoom pr JOIN pr.participants p WHERE p.username = :username)")
+    List<ChatRoomDto> findRoomSummariesByUsername(@Param("username") String username);
+    
+    @Query(ROOM_SUMMARY + "WHERE r.id IN (SELECT pr.id FROM ChatRoom pr JOIN pr.participants p WHERE p.id = :userId)")
+    List<ChatRoomDto> findRoomSummariesByUserId(@Param("userId") Long userId);
+    
+    @Query(ROOM_SUMMARY + "WHERE r.name LIKE %:keyword% OR r.description LIKE %:keyword%")
+    List<ChatRoomDto> searchRoomSummaries(@Param("keyword") String keyword);
+    
+    @Query(ROOM_SUMMARY + "WHERE r.id IN :roomIds")
+    List<ChatRoomDto> findRoomSummariesByIdIn(@Param("roomIds") Collection<Long> roomIds);
+    
+    @Query(ROOM_SUMMARY + "WHERE r.id = :roomId")
+    Optional<ChatRoomDto> findRoomSummaryById(@Param("roomId") Long roomId);
+    
+    @Query("SELECT r.id FROM ChatRoom r JOIN r.participants p WHERE p.username = :username")
+    List<Long> findRoomIdsByUsername(@Param("username") String username);
+    
+    @Query("SELECT p.username FROM ChatRoom r JOIN r.participants p WHERE r.id = :roomId")
+    List<String> findParticipantUsernames(@Param("roomId") Long roomId);
+    
+    @Query("SELECT CASE WHEN COUNT(p) > 0 THEN true ELSE false END FROM ChatRoom r JOIN r.participants p " +
+           "WHERE r.id = :roomId AND p.username = :username")
+    boolean isParticipant(@Param("roomId") Long roomId, @Param("username") String username);
+    
+    @Query("SELECT r.messageCount FROM ChatRoom r WHERE r.id = :roomId")
+    Optional<Long> findMessageCountById(@Param("roomId") Long roomId);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.messageCount = r.messageCount + :delta WHERE r.id = :roomId")
+    int incrementMessageCount(@Param("roomId") Long roomId, @Param("delta") long delta);
+    
+    @Query("SELECT r.lastSeq FROM ChatRoom r WHERE r.id = :roomId")
+    Optional<Long> findLastSeqById(@Param("roomId") Long roomId);
+    
+    // The row stays locked until the caller's transaction ends, so no other node takes the same seq
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.lastSeq = r.lastSeq + 1 WHERE r.id = :roomId")
+    int incrementLastSeq(@Param("roomId") Long roomId);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.lastSeq = :seq WHERE r.id = :roomId AND r.lastSeq < :seq")
+    int raiseLastSeq(@Param("roomId") Long roomId, @Param("seq") long seq);
+    
+    // Seeds counters for rooms created before message_count existed; rooms that are really empty recount cheaply
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.messageCount = (SELECT COUNT(m) FROM Message m WHERE m.room.id = r.id) " +
+           "WHERE r.messageCount = 0")
+    int backfillMessageCounts();
+}
@@ -1,25 +1,59 @@
 package com.chatapp.repository;
 
 import com.chatapp.entity.Message;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
     Page<Message> findByRoomIdOrderByCreatedAtDesc(Long roomId, Pageable pageable);
     
+    @EntityGraph(attributePaths = "user")
+    Slice<Message> findByRoomIdOrderByIdDesc(Long roomId, Pageable pageable);
+    
+    @EntityGraph(attributePaths = "user")
+    Slice<Message> findByRoomIdAndIdLessThanOrderByIdDesc(Long roomId, Long id, Pageable pageable);
+    
     List<Message> findByRoomIdOrderByCreatedAtAsc(Long roomId);
     
-    @Query("SELECT m FROM Message m WHERE m.room.id = :roomId AND m.createdAt > :since ORDER BY m.createdAt ASC")
-    List<Message> findNewMessagesByRoomId(@Param("roomId") Long roomId, @Param("since") LocalDateTime since);
+    @EntityGraph(attributePaths = "user")
+    List<Message> findByRoomIdAndSeqGreaterThanOrderBySeqAsc(Long roomId, Long seq, Pageable pageable);
+    
+    // Locks the rows so that edits and deletes wait until the archive job has moved them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @EntityGraph(attributePaths = "user")
+    List<Message> findByRoomIdAndIdLessThanOrderByIdAsc(Long roomId, Long id, Pageable pageable);
+    
+    @Query("SELECT DISTINCT m.room.id FROM Message m WHERE m.id < :id")
+    List<Long> findRoomIdsWithMessagesBefore(@Param("id") Long id);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.room.id = :roomId AND m.id <= :id")
+    int deleteByRoomIdAndIdUpTo(@Param("roomId") Long roomId, @Param("id") Long id);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT MAX(m.seq) FROM Message m WHERE m.room.id = :roomId")
+    Optional<Long> findMaxSeqByRoomId(@Param("roomId") Long roomId);
     
     @Query("SELECT COUNT(m) FROM Message m WHERE m.room.id = :roomId")
     Long countMessagesByRoomId(@Param("roomId") Long roomId);
@@ -29,6 +63,9 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT m FROM Message m WHERE m.user.id = :userId AND m.room.id = :roomId ORDER BY m.createdAt DESC")
     List<Message> findUserMessagesInRoom(@Param("userId") Long userId, @Param("roomId") Long roomId);
     
+    @EntityGraph(attributePaths = "user")
+    List<Message> findByIdIn(Collection<Long> ids);
+    
     @Query("SELECT m FROM Message m WHERE m.content LIKE %:keyword% AND m.room.id = :roomId ORDER BY m.createdAt DESC")
     List<Message> searchMessagesInRoom(@Param("keyword") String keyword, @Param("roomId") Long roomId);
 } 
\ No newline at end of file
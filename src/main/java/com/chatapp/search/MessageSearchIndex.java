@@ -0,0 +1,254 @@
+package com.chatapp.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over message content, partitioned by room.
+ * <p>
+ * The index is kept current by {@link #index} and {@link #remove}, and rebuilt from
+ * the database in the background at startup. Until the rebuild has finished
+ * {@link #isReady()} is false and callers should fall back to the database. Live
+ * updates during the rebuild are applied at once and take precedence: the rebuild
+ * skips its rows for messages they touched, since those rows may be older.
+ * Queries match messages containing every query term and rank them by TF-IDF,
+ * newest first among equal scores.
+ */
+@Component
+public class MessageSearchIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchIndex.class);
+    
+    private static final int REBUILD_BATCH_SIZE = 5000;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${chat.search.index.enabled:true}")
+    private boolean enabled;
+    
+    private final Map<Long, RoomPartition> partitions = new ConcurrentHashMap<>();
+    
+    // Messages indexed or removed by live updates while the rebuild runs
+    private final Set<Long> updatedDuringRebuild = ConcurrentHashMap.newKeySet();
+    
+    private volatile boolean ready;
+    
+    public boolean isReady() {
+        return enabled && ready;
+    }
+    
+    public void index(Long messageId, Long roomId, String content) {
+        if (!enabled) {
+            return;
+        }
+        if (!ready) {
+            updatedDuringRebuild.add(messageId);
+        }
+        partitions.computeIfAbsent(roomId, id -> new RoomPartition()).put(messageId, Tokenizer.termFrequencies(content));
+    }
+    
+    public void remove(Long messageId, Long roomId) {
+        if (!ready) {
+            updatedDuringRebuild.add(messageId);
+        }
+        RoomPartition partition = partitions.get(roomId);
+        if (partition != null) {
+            partition.remove(messageId);
+        }
+    }
+    
+    /**
+     * Searches the given rooms and returns one page of hits, best match first.
+     */
+    public SearchPage search(Collection<Long> roomIds, String query, int page, int size) {
+        List<String> terms = new ArrayList<>(Tokenizer.termFrequencies(query).keySet());
+        if (terms.isEmpty()) {
+            return new SearchPage(List.of(), 0);
+        }
+        
+        List<SearchHit> hits = new ArrayList<>();
+        for (Long roomId : roomIds) {
+            RoomPartition partition = partitions.get(roomId);
+            if (partition != null) {
+                partition.search(roomId, terms, hits);
+            }
+        }
+        
+        hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                .thenComparing(Comparator.comparingLong(SearchHit::messageId).reversed()));
+        
+        // In long arithmetic so a large page or size cannot overflow into a negative index
+        int from = (int) Math.min((long) Math.max(0, page) * Math.max(0, size), hits.size());
+        int to = (int) Math.min((long) from + Math.max(0, size), hits.size());
+        return new SearchPage(new ArrayList<>(hits.subList(from, to)), hits.size());
+    }
+    
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        
+        long started = System.currentTimeMillis();
+        long lastId = Long.MIN_VALUE;
+        long indexed = 0;
+        
+        // Walk the table in primary key order so each batch is an index range scan
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, room_id, content FROM messages WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new Object[] {rs.getLong(1), rs.getLong(2), rs.getString(3)},
+                    lastId, REBUILD_BATCH_SIZE);
+            
+            for (Object[] row : rows) {
+                partitions.computeIfAbsent((Long) row[1], id -> new RoomPartition())
+                        .putUnlessUpdated((Long) row[0], Tokenizer.termFrequencies((String) row[2]), updatedDuringRebuild);
+            }
+            indexed += rows.size();
+            
+            if (rows.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        
+        ready = true;
+        updatedDuringRebuild.clear();
+        logger.info("Indexed {} messages in {} rooms for search in {} ms",
+                indexed, partitions.size(), System.currentTimeMillis() - started);
+    }
+    
+    public record SearchHit(long messageId, long roomId, double score) {
+    }
+    
+    public record SearchPage(List<SearchHit> hits, int totalHits) {
+    }
+    
+    /**
+     * Postings for a single room. Readers share the lock; index updates take it exclusively.
+     */
+    private static final class RoomPartition {
+        
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        
+        // term -> (message ID -> term frequency)
+        private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+        
+        // message ID -> term frequencies, kept so updates and deletes can undo postings
+        private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+        
+        void put(Long messageId, Map<String, Integer> terms) {
+            lock.writeLock().lock();
+            try {
+                putLocked(messageId, terms);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        /**
+         * Indexes a rebuilt row unless a live update touched the message. Live updates
+         * record the ID before taking the lock, so one that is not seen here applies after.
+         */
+        void putUnlessUpdated(Long messageId, Map<String, Integer> terms, Set<Long> updated) {
+            lock.writeLock().lock();
+            try {
+                if (!updated.contains(messageId)) {
+                    putLocked(messageId, terms);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        private void putLocked(Long messageId, Map<String, Integer> terms) {
+            removeLocked(messageId);
+            if (terms.isEmpty()) {
+                return;
+            }
+            documents.put(messageId, terms);
+            terms.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(messageId, frequency));
+        }
+        
+        void remove(Long messageId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(messageId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        private void removeLocked(Long messageId) {
+            Map<String, Integer> previous = documents.remove(messageId);
+            if (previous == null) {
+                return;
+            }
+            for (String term : previous.keySet()) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(messageId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+        
+        void search(Long roomId, List<String> terms, List<SearchHit> hits) {
+            lock.readLock().lock();
+            try {
+                List<Map<Long, Integer>> lists = new ArrayList<>(terms.size());
+                for (String term : terms) {
+                    Map<Long, Integer> posting = postings.get(term);
+                    if (posting == null) {
+                        return;
+                    }
+                    lists.add(posting);
+                }
+                
+                // Drive the intersection from the rarest term
+                lists.sort(Comparator.comparingInt(Map::size));
+                double documentCount = documents.size();
+                
+                candidates:
+                for (Map.Entry<Long, Integer> candidate : lists.get(0).entrySet()) {
+                    Long messageId = candidate.getKey();
+                    double score = 0;
+                    for (Map<Long, Integer> posting : lists) {
+                        Integer frequency = posting.get(messageId);
+                        if (frequency == null) {
+                            continue candidates;
+                        }
+                        score += (1 + Math.log(frequency)) * Math.log(1 + documentCount / posting.size());
+                    }
+                    score /= Math.sqrt(documents.get(messageId).size());
+                    hits.add(new SearchHit(messageId, roomId, score));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.chatapp.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index for typeahead over short text entries such as room names or usernames.
+ * <p>
+ * Each entry has a primary field (the name) and an optional secondary field. Queries of
+ * three or more characters are answered by intersecting trigram postings and verifying
+ * the substring; shorter queries fall back to word-prefix lookups on the primary field.
+ * Results are ranked exact match, prefix, word prefix, substring, then secondary-field
+ * match, with shorter names first.
+ */
+public class NGramIndex {
+    
+    private static final int GRAM_LENGTH = 3;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final Map<String, Set<Long>> grams = new HashMap<>();
+    
+    private final NavigableMap<String, Set<Long>> words = new TreeMap<>();
+    
+    private final Map<Long, Entry> entries = new HashMap<>();
+    
+    public void put(Long id, String primary, String secondary) {
+        Entry entry = new Entry(normalize(primary), normalize(secondary));
+        
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            entries.put(id, entry);
+            for (String gram : entry.grams()) {
+                grams.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+            }
+            for (String word : entry.words()) {
+                words.computeIfAbsent(word, w -> new HashSet<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the IDs of up to {@code limit} matching entries, best match first.
+     */
+    public List<Long> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = q.length() >= GRAM_LENGTH ? gramCandidates(q) : prefixCandidates(q, limit);
+            
+            List<Match> matches = new ArrayList<>();
+            for (Long id : candidates) {
+                Entry entry = entries.get(id);
+                int rank = entry.rank(q);
+                if (rank >= 0) {
+                    matches.add(new Match(id, rank, entry.primary.length()));
+                }
+            }
+            
+            matches.sort(Comparator.comparingInt(Match::rank)
+                    .thenComparingInt(Match::length)
+                    .thenComparingLong(Match::id));
+            
+            List<Long> ids = new ArrayList<>(Math.min(limit, matches.size()));
+            for (int i = 0; i < matches.size() && i < limit; i++) {
+                ids.add(matches.get(i).id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private Set<Long> gramCandidates(String q) {
+        List<Set<Long>> postings = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= q.length(); i++) {
+            Set<Long> posting = grams.get(q.substring(i, i + GRAM_LENGTH));
+            if (posting == null) {
+                return Set.of();
+            }
+            postings.add(posting);
+        }
+        
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Long> candidates = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(postings.get(i));
+        }
+        return candidates;
+    }
+    
+    private Set<Long> prefixCandidates(String q, int limit) {
+        // Short prefixes can match most entries; collect a bounded pool to rank from
+        int poolSize = limit * 10;
+        Set<Long> candidates = new HashSet<>();
+        for (Set<Long> ids : words.subMap(q, true, q + Character.MAX_VALUE, true).values()) {
+            candidates.addAll(ids);
+            if (candidates.size() >= poolSize) {
+                break;
+            }
+        }
+        return candidates;
+    }
+    
+    private void removeLocked(Long id) {
+        Entry previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : previous.grams()) {
+            removePosting(grams, gram, id);
+        }
+        for (String word : previous.words()) {
+            removePosting(words, word, id);
+        }
+    }
+    
+    private static void removePosting(Map<String, Set<Long>> postings, String key, Long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+    
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private record Match(long id, int rank, int length) {
+    }
+    
+    private record Entry(String primary, String secondary) {
+        
+        Set<String> grams() {
+            Set<String> result = new HashSet<>();
+            addGrams(primary, result);
+            addGrams(secondary, result);
+            return result;
+        }
+        
+        Set<String> words() {
+            Set<String> result = new HashSet<>();
+            result.add(primary);
+            for (String word : primary.split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    result.add(word);
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Lower is better; -1 when the entry does not contain the query.
+         */
+        int rank(String q) {
+            if (primary.equals(q)) {
+                return 0;
+            }
+            if (primary.startsWith(q)) {
+                return 1;
+            }
+            int index = primary.indexOf(q);
+            if (index > 0) {
+                return Character.isLetterOrDigit(primary.charAt(index - 1)) ? 3 : 2;
+            }
+            return secondary.contains(q) ? 4 : -1;
+        }
+        
+        private static void addGrams(String text, Set<String> result) {
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                result.add(text.substring(i, i + GRAM_LENGTH));
+            }
+        }
+    }
+}
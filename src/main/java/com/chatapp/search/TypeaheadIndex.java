@@ -0,0 +1,98 @@
+package com.chatapp.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Typeahead indexes over room names/descriptions and usernames/emails.
+ * <p>
+ * Kept current by the services on create and register, and rebuilt from the database
+ * in the background at startup. Until then {@link #isReady()} is false and callers
+ * should fall back to the database.
+ */
+@Component
+public class TypeaheadIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TypeaheadIndex.class);
+    
+    private static final int REBUILD_BATCH_SIZE = 5000;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${chat.search.typeahead.enabled:true}")
+    private boolean enabled;
+    
+    private final NGramIndex rooms = new NGramIndex();
+    
+    private final NGramIndex users = new NGramIndex();
+    
+    private volatile boolean ready;
+    
+    public boolean isReady() {
+        return enabled && ready;
+    }
+    
+    public void indexRoom(Long roomId, String name, String description) {
+        if (enabled) {
+            rooms.put(roomId, name, description);
+        }
+    }
+    
+    public void indexUser(Long userId, String username, String email) {
+        if (enabled) {
+            users.put(userId, username, email);
+        }
+    }
+    
+    public List<Long> searchRooms(String query, int limit) {
+        return rooms.search(query, limit);
+    }
+    
+    public List<Long> searchUsers(String query, int limit) {
+        return users.search(query, limit);
+    }
+    
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        
+        long started = System.currentTimeMillis();
+        rebuild("SELECT id, name, description FROM chat_rooms WHERE id > ? ORDER BY id LIMIT ?", rooms);
+        rebuild("SELECT id, username, email FROM users WHERE id > ? ORDER BY id LIMIT ?", users);
+        
+        ready = true;
+        logger.info("Indexed {} rooms and {} users for typeahead in {} ms",
+                rooms.size(), users.size(), System.currentTimeMillis() - started);
+    }
+    
+    private void rebuild(String sql, NGramIndex index) {
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(sql,
+                    (rs, rowNum) -> new Object[] {rs.getLong(1), rs.getString(2), rs.getString(3)},
+                    lastId, REBUILD_BATCH_SIZE);
+            
+            for (Object[] row : rows) {
+                index.put((Long) row[0], (String) row[1], (String) row[2]);
+            }
+            
+            if (rows.size() < REBUILD_BATCH_SIZE) {
+                return;
+            }
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+        }
+    }
+}
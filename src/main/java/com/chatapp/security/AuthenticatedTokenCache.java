@@ -0,0 +1,61 @@
+package com.chatapp.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the principal of recently verified tokens, so repeat requests with the same
+ * token skip signature verification and the user lookup. Entries live for the configured
+ * TTL but never past the token's own expiry, and the least recently used entry is evicted
+ * once the cache is full.
+ */
+@Component
+public class AuthenticatedTokenCache {
+    
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxEntries;
+    
+    @Value("${jwt.cache.ttl-ms:300000}")
+    private long ttlMs;
+    
+    private final LinkedHashMap<String, CachedPrincipal> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    
+    /**
+     * Returns the principal for a previously verified token, or null if it is unknown or expired.
+     */
+    public synchronized UserDetails get(String token) {
+        CachedPrincipal cached = entries.get(token);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(token);
+            return null;
+        }
+        return cached.userDetails();
+    }
+    
+    public synchronized void put(String token, UserDetails userDetails, Date tokenExpiration) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        entries.put(token, new CachedPrincipal(userDetails, expiresAt));
+    }
+    
+    private record CachedPrincipal(UserDetails userDetails, long expiresAt) {
+    }
+}
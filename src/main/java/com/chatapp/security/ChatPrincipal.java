@@ -0,0 +1,49 @@
+package com.chatapp.security;
+
+import java.security.Principal;
+import java.util.Objects;
+
+/**
+ * Principal attached to an authenticated STOMP session. Carries the user ID so message
+ * handling does not have to look the user up again.
+ */
+public class ChatPrincipal implements Principal {
+    
+    private final Long userId;
+    private final String username;
+    
+    public ChatPrincipal(Long userId, String username) {
+        this.userId = userId;
+        this.username = username;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    @Override
+    public String getName() {
+        return username;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChatPrincipal other)) {
+            return false;
+        }
+        return Objects.equals(userId, other.userId) && Objects.equals(username, other.username);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, username);
+    }
+    
+    @Override
+    public String toString() {
+        return "ChatPrincipal{userId=" + userId + ", username='" + username + "'}";
+    }
+}
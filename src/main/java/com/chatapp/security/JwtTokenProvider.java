@@ -2,6 +2,11 @@ package com.chatapp.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,6 +14,8 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenProvider {
@@ -19,8 +26,34 @@ public class JwtTokenProvider {
     @Value("${jwt.expiration}")
     private int jwtExpirationInMs;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    private SecretKey signingKey;
+    
+    private JwtParser parser;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Timer validVerifications;
+    
+    private Timer invalidVerifications;
+    
+    @PostConstruct
+    public void init() {
+        // Both are immutable and thread-safe, so they are built once instead of per token
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        
+        validVerifications = verificationTimer("valid");
+        invalidVerifications = verificationTimer("invalid");
+    }
+    
+    private Timer verificationTimer(String outcome) {
+        return Timer.builder("chat.jwt.verify")
+                .description("Time to verify a JWT signature and parse its claims")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
     
     public String generateToken(Authentication authentication) {
@@ -33,42 +66,47 @@ public class JwtTokenProvider {
                 .setSubject(userPrincipal.getUsername())
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
     
-    public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.getSubject();
+    /**
+     * Verifies the token and returns its claims, or empty if the token is invalid or expired.
+     */
+    public Optional<Claims> parseClaims(String token) {
+        long start = System.nanoTime();
+        Optional<Claims> claims = verify(token);
+        (claims.isPresent() ? validVerifications : invalidVerifications)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return claims;
     }
     
-    public boolean validateToken(String authToken) {
+    private Optional<Claims> verify(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(authToken);
-            return true;
+            return Optional.of(parser.parseClaimsJws(token).getBody());
         } catch (SecurityException ex) {
             // Invalid JWT signature
-            return false;
+            return Optional.empty();
         } catch (MalformedJwtException ex) {
             // Invalid JWT token
-            return false;
+            return Optional.empty();
         } catch (ExpiredJwtException ex) {
             // Expired JWT token
-            return false;
+            return Optional.empty();
         } catch (UnsupportedJwtException ex) {
             // Unsupported JWT token
-            return false;
+            return Optional.empty();
         } catch (IllegalArgumentException ex) {
             // JWT claims string is empty
-            return false;
+            return Optional.empty();
         }
     }
+    
+    public String getUsernameFromJWT(String token) {
+        return parser.parseClaimsJws(token).getBody().getSubject();
+    }
+    
+    public boolean validateToken(String authToken) {
+        return parseClaims(authToken).isPresent();
+    }
 } 
\ No newline at end of file
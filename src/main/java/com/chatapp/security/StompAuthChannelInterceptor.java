@@ -0,0 +1,59 @@
+package com.chatapp.security;
+
+import com.chatapp.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Authenticates STOMP sessions from the JWT in the CONNECT frame's {@code Authorization}
+ * header. The resulting {@link ChatPrincipal} stays on the session, so later frames are
+ * not authenticated again.
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+        
+        String jwt = getJwtFromHeaders(accessor);
+        Claims claims = StringUtils.hasText(jwt) ? tokenProvider.parseClaims(jwt).orElse(null) : null;
+        if (claims == null) {
+            throw new BadCredentialsException("Invalid or missing token");
+        }
+        
+        String username = claims.getSubject();
+        Long userId = userRepository.findIdByUsername(username)
+                .orElseThrow(() -> new BadCredentialsException("User not found"));
+        
+        accessor.setUser(new ChatPrincipal(userId, username));
+        return message;
+    }
+    
+    private String getJwtFromHeaders(StompHeaderAccessor accessor) {
+        String bearerToken = accessor.getFirstNativeHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return null;
+    }
+}
@@ -4,20 +4,31 @@ import com.chatapp.dto.ChatRoomDto;
 import com.chatapp.entity.ChatRoom;
 import com.chatapp.entity.User;
 import com.chatapp.repository.ChatRoomRepository;
-import com.chatapp.repository.MessageRepository;
 import com.chatapp.repository.UserRepository;
+import com.chatapp.search.TypeaheadIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class ChatRoomService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ChatRoomService.class);
+    
     @Autowired
     private ChatRoomRepository chatRoomRepository;
     
@@ -25,7 +36,37 @@ public class ChatRoomService {
     private UserRepository userRepository;
     
     @Autowired
-    private MessageRepository messageRepository;
+    private TypeaheadIndex typeaheadIndex;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Timer publicRoomsTimer;
+    
+    private Timer memberRoomsTimer;
+    
+    private Timer searchRoomsTimer;
+    
+    @PostConstruct
+    public void init() {
+        publicRoomsTimer = roomQueryTimer("public");
+        memberRoomsTimer = roomQueryTimer("member");
+        searchRoomsTimer = roomQueryTimer("search");
+    }
+    
+    private Timer roomQueryTimer(String query) {
+        return Timer.builder("chat.rooms.query")
+                .description("Time to list rooms, by listing")
+                .tag("query", query)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMessageCounts() {
+        int updated = chatRoomRepository.backfillMessageCounts();
+        logger.info("Initialized message counters for {} rooms", updated);
+    }
     
     public ChatRoomDto createRoom(ChatRoomDto roomDto, String creatorUsername) {
         if (chatRoomRepository.existsByName(roomDto.getName())) {
@@ -47,31 +88,57 @@ public class ChatRoomService {
         room.getParticipants().add(creator);
         
         ChatRoom savedRoom = chatRoomRepository.save(room);
+        typeaheadIndex.indexRoom(savedRoom.getId(), savedRoom.getName(), savedRoom.getDescription());
         
         return convertToDto(savedRoom);
     }
     
     public List<ChatRoomDto> getAllPublicRooms() {
-        return chatRoomRepository.findByIsPrivateFalse().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return publicRoomsTimer.record(() -> chatRoomRepository.findPublicRoomSummaries());
     }
     
     public List<ChatRoomDto> getRoomsByUserId(Long userId) {
-        return chatRoomRepository.findRoomsByUserId(userId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return memberRoomsTimer.record(() -> chatRoomRepository.findRoomSummariesByUserId(userId));
+    }
+    
+    public List<ChatRoomDto> getRoomsByUsername(String username) {
+        return memberRoomsTimer.record(() -> chatRoomRepository.findRoomSummariesByUsername(username));
     }
     
     public Optional<ChatRoomDto> getRoomById(Long roomId) {
-        return chatRoomRepository.findById(roomId)
-                .map(this::convertToDto);
+        return getRoomById(roomId, false);
+    }
+    
+    public Optional<ChatRoomDto> getRoomById(Long roomId, boolean includeParticipants) {
+        Optional<ChatRoomDto> room = chatRoomRepository.findRoomSummaryById(roomId);
+        if (includeParticipants) {
+            room.ifPresent(dto -> dto.setParticipants(new HashSet<>(getRoomParticipants(roomId))));
+        }
+        return room;
+    }
+    
+    public List<ChatRoomDto> searchRooms(String keyword, int limit) {
+        return searchRoomsTimer.record(() -> findRooms(keyword, limit));
     }
     
-    public List<ChatRoomDto> searchRooms(String keyword) {
-        return chatRoomRepository.findByNameOrDescriptionContaining(keyword).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    private List<ChatRoomDto> findRooms(String keyword, int limit) {
+        if (!typeaheadIndex.isReady()) {
+            return chatRoomRepository.searchRoomSummaries(keyword).stream().limit(limit).toList();
+        }
+        
+        List<Long> roomIds = typeaheadIndex.searchRooms(keyword, limit);
+        if (roomIds.isEmpty()) {
+            return List.of();
+        }
+        
+        // Keep the index ranking; the IN query returns rows in arbitrary order
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < roomIds.size(); i++) {
+            rank.put(roomIds.get(i), i);
+        }
+        List<ChatRoomDto> rooms = chatRoomRepository.findRoomSummariesByIdIn(roomIds);
+        rooms.sort(Comparator.comparing(room -> rank.get(room.getId())));
+        return rooms;
     }
     
     public void addUserToRoom(Long roomId, String username) {
@@ -97,17 +164,14 @@ public class ChatRoomService {
     }
     
     public List<String> getRoomParticipants(Long roomId) {
-        return userRepository.findUsersByRoomId(roomId).stream()
-                .map(User::getUsername)
-                .collect(Collectors.toList());
+        return chatRoomRepository.findParticipantUsernames(roomId);
     }
     
     public boolean isUserInRoom(Long roomId, String username) {
-        return userRepository.findUsersByRoomId(roomId).stream()
-                .anyMatch(user -> user.getUsername().equals(username));
+        return chatRoomRepository.isParticipant(roomId, username);
     }
     
-    private ChatRoomDto convertToDto(ChatRoom room) {
+    ChatRoomDto convertToDto(ChatRoom room) {
         ChatRoomDto dto = new ChatRoomDto();
         dto.setId(room.getId());
         dto.setName(room.getName());
@@ -121,14 +185,8 @@ public class ChatRoomService {
             dto.setCreatedByUsername(room.getCreatedBy().getUsername());
         }
         
-        Set<String> participants = room.getParticipants().stream()
-                .map(User::getUsername)
-                .collect(Collectors.toSet());
-        dto.setParticipants(participants);
-        
-        // Get message count
-        Long messageCount = messageRepository.countMessagesByRoomId(room.getId());
-        dto.setMessageCount(messageCount);
+        dto.setParticipantCount(room.getParticipants().size());
+        dto.setMessageCount(room.getMessageCount());
         
         return dto;
     }
@@ -0,0 +1,122 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts already numbered messages into the messages table in JDBC batches and bumps
+ * the rooms' message counters, for the write paths that persist off the send path.
+ */
+@Component
+public class MessageBatchWriter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchWriter.class);
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (id, content, created_at, message_type, user_id, room_id, seq, is_edited) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, false)";
+    
+    private static final String INCREMENT_COUNT_SQL =
+            "UPDATE chat_rooms SET message_count = message_count + ? WHERE id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Inserts the batch. If the batch fails it is retried one message at a time, so one
+     * bad message does not sink the others; messages that are already stored, as when
+     * a batch is replayed after a crash, are skipped. Only messages the database rejects
+     * for good, such as integrity violations, are dropped.
+     *
+     * @throws DataAccessException if the failure may go away on a retry, such as a lost
+     *         connection, a deadlock or a lock timeout, in which case messages before the
+     *         failing one may have been stored
+     */
+    public void insert(List<MessageDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        List<MessageDto> inserted = batch;
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bindMessage);
+        } catch (DataAccessException e) {
+            if (isRetryable(e)) {
+                // Retrying one by one would fail the same way
+                throw e;
+            }
+            logger.warn("Batch insert of {} messages failed, retrying one by one", batch.size(), e);
+            inserted = new ArrayList<>(batch.size());
+            try {
+                for (MessageDto message : batch) {
+                    try {
+                        jdbcTemplate.update(INSERT_SQL, ps -> bindMessage(ps, message));
+                        inserted.add(message);
+                    } catch (DuplicateKeyException ex) {
+                        logger.debug("Message {} is already stored", message.getId());
+                    } catch (DataAccessException ex) {
+                        if (isRetryable(ex)) {
+                            throw ex;
+                        }
+                        logger.error("Dropping message {} from user {} in room {}: {}",
+                                message.getId(), message.getUserId(), message.getRoomId(), ex.getMessage());
+                    }
+                }
+            } finally {
+                updateMessageCounts(inserted);
+            }
+            return;
+        }
+        
+        updateMessageCounts(inserted);
+    }
+    
+    private static boolean isRetryable(DataAccessException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+    
+    private void updateMessageCounts(List<MessageDto> inserted) {
+        Map<Long, Integer> countsByRoom = new HashMap<>();
+        for (MessageDto message : inserted) {
+            countsByRoom.merge(message.getRoomId(), 1, Integer::sum);
+        }
+        
+        List<Object[]> increments = new ArrayList<>(countsByRoom.size());
+        countsByRoom.forEach((roomId, count) -> increments.add(new Object[] {count, roomId}));
+        
+        try {
+            jdbcTemplate.batchUpdate(INCREMENT_COUNT_SQL, increments);
+        } catch (DataAccessException e) {
+            logger.error("Failed to update message counters for {} rooms", countsByRoom.size(), e);
+        }
+    }
+    
+    private void bindMessage(PreparedStatement ps, MessageDto message) throws SQLException {
+        ps.setLong(1, message.getId());
+        ps.setString(2, message.getContent());
+        ps.setTimestamp(3, Timestamp.valueOf(message.getCreatedAt()));
+        ps.setString(4, message.getMessageType().name());
+        ps.setLong(5, message.getUserId());
+        ps.setLong(6, message.getRoomId());
+        ps.setLong(7, message.getSeq());
+    }
+}
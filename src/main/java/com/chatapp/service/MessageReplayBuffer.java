@@ -0,0 +1,153 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the latest messages published in each room, in sequence order, so clients
+ * resuming after a reconnect are answered from memory. Unlike {@link RecentMessageCache}
+ * it is never filled from the database: a room's buffer starts with the first message
+ * this node publishes or receives from another node in it and covers every later seq
+ * until old messages are dropped for capacity. Rooms are evicted in LRU order beyond
+ * the room limit.
+ */
+@Component
+public class MessageReplayBuffer {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.replay.per-room:500}")
+    private int perRoomCapacity;
+    
+    @Value("${chat.replay.max-rooms:1000}")
+    private int maxRooms;
+    
+    private final LinkedHashMap<Long, RoomBuffer> rooms = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RoomBuffer> eldest) {
+            return size() > maxRooms;
+        }
+    };
+    
+    private Counter hits;
+    
+    private Counter misses;
+    
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("chat.replay.reads")
+                .description("Resume requests by where they were answered from")
+                .tag("source", "buffer")
+                .register(meterRegistry);
+        misses = Counter.builder("chat.replay.reads")
+                .description("Resume requests by where they were answered from")
+                .tag("source", "database")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Adds a newly published message in seq order. Messages relayed from other nodes can
+     * arrive out of order; one at or below the buffer's floor is not covered and is ignored.
+     */
+    public synchronized void append(MessageDto message) {
+        if (message.getSeq() == null || perRoomCapacity <= 0) {
+            return;
+        }
+        long seq = message.getSeq();
+        RoomBuffer buffer = rooms.computeIfAbsent(message.getRoomId(), id -> new RoomBuffer(seq - 1));
+        if (seq <= buffer.floor) {
+            return;
+        }
+        
+        // Almost always appended at the end, so the position is searched from there
+        List<MessageDto> messages = buffer.messages;
+        int position = messages.size();
+        while (position > 0 && messages.get(position - 1).getSeq() > seq) {
+            position--;
+        }
+        if (position > 0 && messages.get(position - 1).getSeq() == seq) {
+            return;
+        }
+        messages.add(position, message);
+        if (messages.size() > perRoomCapacity) {
+            buffer.floor = buffer.messages.remove(0).getSeq();
+        }
+    }
+    
+    /**
+     * Returns up to {@code limit} messages with a seq above {@code afterSeq}, oldest first,
+     * or empty if the buffer no longer holds all of them.
+     */
+    public synchronized Optional<List<MessageDto>> getAfter(Long roomId, long afterSeq, int limit) {
+        RoomBuffer buffer = rooms.get(roomId);
+        if (buffer == null || afterSeq < buffer.floor) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        
+        // Sorted by seq, so the first message to return is found by binary search
+        List<MessageDto> messages = buffer.messages;
+        int low = 0;
+        int high = messages.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (messages.get(mid).getSeq() <= afterSeq) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Optional.of(new ArrayList<>(messages.subList(low, Math.min(messages.size(), low + limit))));
+    }
+    
+    public synchronized void replace(MessageDto message) {
+        RoomBuffer buffer = rooms.get(message.getRoomId());
+        if (buffer == null) {
+            return;
+        }
+        ListIterator<MessageDto> messages = buffer.messages.listIterator();
+        while (messages.hasNext()) {
+            if (messages.next().getId().equals(message.getId())) {
+                messages.set(message);
+                return;
+            }
+        }
+    }
+    
+    public synchronized void remove(Long roomId, Long messageId) {
+        RoomBuffer buffer = rooms.get(roomId);
+        if (buffer == null) {
+            return;
+        }
+        buffer.messages.removeIf(message -> message.getId().equals(messageId));
+    }
+    
+    /**
+     * One room's messages, oldest first. Every message with a seq above {@code floor}
+     * is held unless it was deleted or is still being relayed from another node.
+     */
+    private static final class RoomBuffer {
+        
+        private final List<MessageDto> messages = new ArrayList<>();
+        
+        private long floor;
+        
+        RoomBuffer(long floor) {
+            this.floor = floor;
+        }
+    }
+}
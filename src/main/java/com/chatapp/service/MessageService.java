@@ -1,21 +1,40 @@
 package com.chatapp.service;
 
+import com.chatapp.archive.MessageArchive;
+import com.chatapp.commitlog.MessageCommitLog;
 import com.chatapp.dto.MessageDto;
-import com.chatapp.entity.ChatRoom;
 import com.chatapp.entity.Message;
-import com.chatapp.entity.User;
+import com.chatapp.id.IdGenerator;
 import com.chatapp.repository.ChatRoomRepository;
 import com.chatapp.repository.MessageRepository;
 import com.chatapp.repository.UserRepository;
+import com.chatapp.search.MessageSearchIndex;
+import com.chatapp.websocket.RoomSubscriptionRegistry;
+import com.chatapp.websocket.RoomTier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,37 +49,295 @@ public class MessageService {
     @Autowired
     private ChatRoomRepository chatRoomRepository;
     
-    public MessageDto saveMessage(MessageDto messageDto, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    @Autowired
+    private IdGenerator idGenerator;
+    
+    @Autowired(required = false)
+    private MessageWriteBehindQueue writeBehindQueue;
+    
+    @Autowired(required = false)
+    private MessageCommitLog commitLog;
+    
+    @Autowired(required = false)
+    private MessageArchive archive;
+    
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+    
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+    
+    @Autowired
+    private RoomSequencer roomSequencer;
+    
+    @Autowired
+    private MessageReplayBuffer replayBuffer;
+    
+    @Autowired
+    private RoomSubscriptionRegistry subscriptionRegistry;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Indexed by RoomTier ordinal
+    private final Timer[] saveTimers = new Timer[RoomTier.values().length];
+    
+    // Rooms are never deleted, so a room that existed once can skip the lookup
+    private final Set<Long> knownRoomIds = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void init() {
+        for (RoomTier tier : RoomTier.values()) {
+            saveTimers[tier.ordinal()] = Timer.builder("chat.messages.save")
+                    .description("Time to save a chat message and hand it to the room's subscribers")
+                    .tag("tier", tier.tag())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+        }
+    }
+    
+    /**
+     * Saves a message from an already authenticated user. The user and room are only
+     * referenced by ID, so no rows are read to store the message.
+     * <p>
+     * The message gets the room's next sequence number, and {@code publish} is called
+     * with the saved message before the room's next message is saved, so subscribers
+     * receive the room's messages saved on this node in sequence order.
+     */
+    public MessageDto saveMessage(MessageDto messageDto, Long userId, String username, Consumer<MessageDto> publish) {
+        long start = System.nanoTime();
+        requireRoom(messageDto.getRoomId());
+        MessageDto savedDto = roomSequencer.next(messageDto.getRoomId(), seq -> {
+            MessageDto saved;
+            if (commitLog != null) {
+                saved = appendMessage(messageDto, userId, username, seq);
+            } else if (writeBehindQueue != null) {
+                saved = enqueueMessage(messageDto, userId, username, seq);
+            } else {
+                saved = insertMessage(messageDto, userId, username, seq);
+            }
+            replayBuffer.append(saved);
+            publish.accept(saved);
+            return saved;
+        });
         
-        ChatRoom room = chatRoomRepository.findById(messageDto.getRoomId())
-                .orElseThrow(() -> new RuntimeException("Room not found"));
+        recentMessageCache.append(savedDto);
+        messageSearchIndex.index(savedDto.getId(), savedDto.getRoomId(), savedDto.getContent());
         
+        saveTimers[subscriptionRegistry.tierOf(savedDto.getRoomId()).ordinal()]
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return savedDto;
+    }
+    
+    /**
+     * Records a message that another node saved and relayed, so that this node's recent
+     * messages, replay buffer and search index include it like a message saved here.
+     */
+    public void applyRelayedMessage(MessageDto message) {
+        replayBuffer.append(message);
+        recentMessageCache.append(message);
+        messageSearchIndex.index(message.getId(), message.getRoomId(), message.getContent());
+    }
+    
+    /**
+     * Rejects unknown rooms before a message takes a sequence number. Only the direct
+     * insert path has a foreign key check; the batched paths would broadcast the message
+     * and drop it later.
+     */
+    private void requireRoom(Long roomId) {
+        if (knownRoomIds.contains(roomId)) {
+            return;
+        }
+        if (!chatRoomRepository.existsById(roomId)) {
+            throw new RoomNotFoundException();
+        }
+        knownRoomIds.add(roomId);
+    }
+    
+    private MessageDto insertMessage(MessageDto messageDto, Long userId, String username, long seq) {
         Message message = new Message();
         message.setContent(messageDto.getContent());
-        message.setUser(user);
-        message.setRoom(room);
+        message.setUser(userRepository.getReferenceById(userId));
+        message.setRoom(chatRoomRepository.getReferenceById(messageDto.getRoomId()));
         message.setMessageType(Message.MessageType.TEXT);
         message.setCreatedAt(LocalDateTime.now());
+        message.setSeq(seq);
         
-        Message savedMessage = messageRepository.save(message);
+        Message savedMessage;
+        try {
+            savedMessage = messageRepository.save(message);
+        } catch (DataIntegrityViolationException e) {
+            // The room reference was not checked up front; the foreign key rejects unknown rooms
+            throw new RoomNotFoundException();
+        }
+        chatRoomRepository.incrementMessageCount(messageDto.getRoomId(), 1);
         
-        return new MessageDto(savedMessage);
+        // Built by hand: reading the user or room through the references would load them
+        MessageDto savedDto = new MessageDto(savedMessage.getContent(), messageDto.getRoomId());
+        savedDto.setId(savedMessage.getId());
+        savedDto.setUserId(userId);
+        savedDto.setUsername(username);
+        savedDto.setMessageType(savedMessage.getMessageType());
+        savedDto.setCreatedAt(savedMessage.getCreatedAt());
+        savedDto.setSeq(seq);
+        return savedDto;
+    }
+    
+    private MessageDto enqueueMessage(MessageDto messageDto, Long userId, String username, long seq) {
+        MessageDto queuedMessage = buildMessage(messageDto, userId, username, seq);
+        writeBehindQueue.enqueue(queuedMessage);
+        return queuedMessage;
+    }
+    
+    private MessageDto appendMessage(MessageDto messageDto, Long userId, String username, long seq) {
+        MessageDto loggedMessage = buildMessage(messageDto, userId, username, seq);
+        commitLog.append(loggedMessage);
+        return loggedMessage;
+    }
+    
+    /**
+     * Builds a message for the write paths that insert it later, assigning its ID up front.
+     */
+    private MessageDto buildMessage(MessageDto messageDto, Long userId, String username, long seq) {
+        MessageDto message = new MessageDto(messageDto.getContent(), messageDto.getRoomId());
+        message.setId(idGenerator.nextId());
+        message.setUserId(userId);
+        message.setUsername(username);
+        message.setMessageType(Message.MessageType.TEXT);
+        message.setCreatedAt(LocalDateTime.now());
+        message.setSeq(seq);
+        return message;
+    }
+    
+    /**
+     * Returns messages for the room that are accepted but not yet visible in the database.
+     */
+    private List<MessageDto> getUnpersisted(Long roomId) {
+        if (commitLog != null) {
+            return commitLog.getUnprojected(roomId);
+        }
+        if (writeBehindQueue != null) {
+            return writeBehindQueue.getUnflushed(roomId);
+        }
+        return List.of();
     }
     
     public List<MessageDto> getMessagesByRoomId(Long roomId, int page, int size) {
+        if (page == 0 && size <= recentMessageCache.getPerRoomCapacity()) {
+            return recentMessageCache.getLatest(roomId, size)
+                    .orElseGet(() -> loadLatestMessages(roomId, size));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
         Page<Message> messagePage = messageRepository.findByRoomIdOrderByCreatedAtDesc(roomId, pageable);
         
-        return messagePage.getContent().stream()
+        List<MessageDto> messages = messagePage.getContent().stream()
                 .map(MessageDto::new)
                 .collect(Collectors.toList());
+        if (archive != null && messages.size() < size) {
+            // The page runs past the oldest stored message; the rest comes from the archive
+            long skip = Math.max(0, (long) page * size - messagePage.getTotalElements());
+            messages.addAll(archive.getLatest(roomId, skip, size - messages.size()));
+        }
+        return messages;
     }
     
-    public List<MessageDto> getNewMessagesByRoomId(Long roomId, LocalDateTime since) {
-        return messageRepository.findNewMessagesByRoomId(roomId, since).stream()
-                .map(MessageDto::new)
+    private List<MessageDto> loadLatestMessages(Long roomId, int size) {
+        long epoch = recentMessageCache.epoch(roomId);
+        int capacity = recentMessageCache.getPerRoomCapacity();
+        
+        // Queued messages are read before the database so none can fall between the two
+        List<MessageDto> messages = new ArrayList<>(getUnpersisted(roomId));
+        
+        Slice<Message> stored = messageRepository.findByRoomIdOrderByIdDesc(roomId, PageRequest.of(0, capacity));
+        stored.forEach(message -> messages.add(new MessageDto(message)));
+        
+        boolean complete = !stored.hasNext();
+        if (complete && archive != null) {
+            // Fewer than capacity messages are stored; fill up with the newest archived ones
+            int missing = capacity - stored.getNumberOfElements();
+            Long oldestId = stored.hasContent() ? stored.getContent().get(stored.getNumberOfElements() - 1).getId() : null;
+            List<MessageDto> archived = archive.getBefore(roomId, oldestId, missing);
+            messages.addAll(archived);
+            complete = archived.size() < missing || archive.getLastArchivedId(roomId) == 0;
+        }
+        
+        List<MessageDto> latest = recentMessageCache.load(roomId, messages, complete, epoch);
+        return latest.subList(0, Math.min(size, latest.size()));
+    }
+    
+    /**
+     * Returns up to {@code limit} messages older than {@code beforeId}, newest first.
+     * Pages are read by primary key range, so every page costs the same regardless of
+     * how far back it is. A null {@code beforeId} starts from the newest message.
+     */
+    public Slice<MessageDto> getMessagesBefore(Long roomId, Long beforeId, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        
+        if (beforeId == null) {
+            // Asking for one extra message tells us whether an older page exists
+            if (limit < recentMessageCache.getPerRoomCapacity()) {
+                Optional<List<MessageDto>> cached = recentMessageCache.getLatest(roomId, limit + 1);
+                if (cached.isPresent()) {
+                    List<MessageDto> latest = cached.get();
+                    boolean hasNext = latest.size() > limit;
+                    return new SliceImpl<>(hasNext ? latest.subList(0, limit) : latest, pageable, hasNext);
+                }
+            }
+            return continueIntoArchive(roomId, null,
+                    messageRepository.findByRoomIdOrderByIdDesc(roomId, pageable).map(MessageDto::new));
+        }
+        
+        return continueIntoArchive(roomId, beforeId,
+                messageRepository.findByRoomIdAndIdLessThanOrderByIdDesc(roomId, beforeId, pageable)
+                        .map(MessageDto::new));
+    }
+    
+    /**
+     * Completes a history page from the archive when it reaches the oldest stored message.
+     */
+    private Slice<MessageDto> continueIntoArchive(Long roomId, Long beforeId, Slice<MessageDto> stored) {
+        if (archive == null || stored.hasNext()) {
+            return stored;
+        }
+        
+        List<MessageDto> messages = new ArrayList<>(stored.getContent());
+        Long oldestId = messages.isEmpty() ? beforeId : messages.get(messages.size() - 1).getId();
+        int limit = stored.getSize();
+        
+        // Asking for one extra message tells us whether an older page exists
+        messages.addAll(archive.getBefore(roomId, oldestId, limit - messages.size() + 1));
+        boolean hasNext = messages.size() > limit;
+        return new SliceImpl<>(hasNext ? messages.subList(0, limit) : messages, stored.getPageable(), hasNext);
+    }
+    
+    /**
+     * Returns up to {@code limit} messages with a seq above {@code afterSeq}, oldest first,
+     * for clients catching up after a reconnect. Recent gaps are served from the replay
+     * buffer; only clients that fell behind further read the database.
+     */
+    public List<MessageDto> getMessagesAfterSeq(Long roomId, long afterSeq, int limit) {
+        Optional<List<MessageDto>> buffered = replayBuffer.getAfter(roomId, afterSeq, limit);
+        if (buffered.isPresent()) {
+            return buffered.get();
+        }
+        
+        // Queued messages are read before the database so none can fall between the two
+        Map<Long, MessageDto> byId = new HashMap<>();
+        for (MessageDto message : getUnpersisted(roomId)) {
+            if (message.getSeq() != null && message.getSeq() > afterSeq) {
+                byId.put(message.getId(), message);
+            }
+        }
+        messageRepository.findByRoomIdAndSeqGreaterThanOrderBySeqAsc(roomId, afterSeq, PageRequest.of(0, limit))
+                .forEach(message -> byId.putIfAbsent(message.getId(), new MessageDto(message)));
+        if (archive != null && afterSeq < archive.getMaxSeq(roomId)) {
+            archive.getAfterSeq(roomId, afterSeq, limit).forEach(message -> byId.putIfAbsent(message.getId(), message));
+        }
+        
+        return byId.values().stream()
+                .sorted(Comparator.comparing(MessageDto::getSeq))
+                .limit(limit)
                 .collect(Collectors.toList());
     }
     
@@ -77,8 +354,51 @@ public class MessageService {
     }
     
     public List<MessageDto> searchMessagesInRoom(String keyword, Long roomId) {
-        return messageRepository.searchMessagesInRoom(keyword, roomId).stream()
-                .map(MessageDto::new)
+        return searchMessagesInRoom(keyword, roomId, 0, Integer.MAX_VALUE);
+    }
+    
+    public List<MessageDto> searchMessagesInRoom(String keyword, Long roomId, int page, int size) {
+        if (!messageSearchIndex.isReady()) {
+            // Index still rebuilding after startup
+            return messageRepository.searchMessagesInRoom(keyword, roomId).stream()
+                    .skip((long) page * size)
+                    .limit(size)
+                    .map(MessageDto::new)
+                    .collect(Collectors.toList());
+        }
+        
+        return loadSearchHits(messageSearchIndex.search(List.of(roomId), keyword, page, size));
+    }
+    
+    public List<MessageDto> searchMessagesForUser(String keyword, String username, int page, int size) {
+        List<Long> roomIds = chatRoomRepository.findRoomIdsByUsername(username);
+        if (!messageSearchIndex.isReady()) {
+            List<MessageDto> matches = new ArrayList<>();
+            for (Long roomId : roomIds) {
+                messageRepository.searchMessagesInRoom(keyword, roomId).forEach(m -> matches.add(new MessageDto(m)));
+            }
+            matches.sort(Comparator.comparing(MessageDto::getId).reversed());
+            return matches.stream().skip((long) page * size).limit(size).collect(Collectors.toList());
+        }
+        
+        return loadSearchHits(messageSearchIndex.search(roomIds, keyword, page, size));
+    }
+    
+    private List<MessageDto> loadSearchHits(MessageSearchIndex.SearchPage searchPage) {
+        List<Long> ids = searchPage.hits().stream()
+                .map(MessageSearchIndex.SearchHit::messageId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, MessageDto> byId = new HashMap<>();
+        messageRepository.findByIdIn(ids).forEach(message -> byId.put(message.getId(), new MessageDto(message)));
+        
+        // Keep ranking order; hits not yet flushed by write-behind are skipped
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
     
@@ -102,7 +422,12 @@ public class MessageService {
         
         Message updatedMessage = messageRepository.save(message);
         
-        return new MessageDto(updatedMessage);
+        MessageDto updatedDto = new MessageDto(updatedMessage);
+        recentMessageCache.replace(updatedDto);
+        replayBuffer.replace(updatedDto);
+        messageSearchIndex.index(updatedDto.getId(), updatedDto.getRoomId(), updatedDto.getContent());
+        
+        return updatedDto;
     }
     
     public void deleteMessage(Long messageId, String username) {
@@ -115,9 +440,13 @@ public class MessageService {
         }
         
         messageRepository.delete(message);
+        chatRoomRepository.incrementMessageCount(message.getRoom().getId(), -1);
+        recentMessageCache.remove(message.getRoom().getId(), messageId);
+        replayBuffer.remove(message.getRoom().getId(), messageId);
+        messageSearchIndex.remove(messageId, message.getRoom().getId());
     }
     
     public Long getMessageCountByRoomId(Long roomId) {
-        return messageRepository.countMessagesByRoomId(roomId);
+        return chatRoomRepository.findMessageCountById(roomId).orElse(0L);
     }
 } 
\ No newline at end of file
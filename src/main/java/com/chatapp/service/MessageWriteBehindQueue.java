@@ -0,0 +1,220 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded write-behind buffer for chat messages. Messages are accepted into an
+ * in-memory queue and inserted by a single flusher thread in JDBC batches, either
+ * when a batch fills up or when the flush interval elapses.
+ * <p>
+ * Queued messages have already been broadcast, so a batch the database cannot take is
+ * held and retried rather than dropped. While it is held the queue fills up and
+ * {@link #enqueue} pushes back on senders. Only messages the database rejects for good
+ * are dropped, by {@link MessageBatchWriter}.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.messages.write-behind.enabled", havingValue = "true")
+public class MessageWriteBehindQueue {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehindQueue.class);
+    
+    private static final long RETRY_DELAY_MS = 1000;
+    
+    @Autowired
+    private MessageBatchWriter batchWriter;
+    
+    @Value("${chat.messages.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${chat.messages.write-behind.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${chat.messages.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+    
+    @Value("${chat.messages.write-behind.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+    
+    @Value("${chat.messages.write-behind.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+    
+    private BlockingQueue<MessageDto> queue;
+    
+    // Messages accepted but not yet committed, including the batch being flushed
+    private final Map<Long, MessageDto> unflushed = new ConcurrentHashMap<>();
+    
+    private Thread flusher;
+    private volatile boolean running;
+    
+    // Set on shutdown; a batch that still fails after it is given up
+    private volatile long giveUpAtNanos = Long.MAX_VALUE;
+    
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    /**
+     * Queues a message for persistence. Blocks for at most the configured offer
+     * timeout when the queue is full and then rejects the message, so callers
+     * see backpressure instead of unbounded memory growth.
+     */
+    public void enqueue(MessageDto message) {
+        if (!running) {
+            throw new RuntimeException("Message persistence is shutting down");
+        }
+        
+        unflushed.put(message.getId(), message);
+        boolean accepted = false;
+        try {
+            accepted = queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!accepted) {
+                unflushed.remove(message.getId());
+            }
+        }
+        
+        if (!accepted) {
+            throw new ServerBusyException();
+        }
+    }
+    
+    /**
+     * Returns messages for the room that are accepted but not yet visible in the database.
+     */
+    public List<MessageDto> getUnflushed(Long roomId) {
+        List<MessageDto> pending = new ArrayList<>();
+        for (MessageDto message : unflushed.values()) {
+            if (message.getRoomId().equals(roomId)) {
+                pending.add(message);
+            }
+        }
+        return pending;
+    }
+    
+    public int getQueuedCount() {
+        return queue.size();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        giveUpAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        running = false;
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // Anything that slipped in after the flusher exited is written here
+        List<MessageDto> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            flush(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+        }
+        logger.info("Write-behind queue stopped, {} trailing messages flushed on shutdown", remaining.size());
+    }
+    
+    private void runFlushLoop() {
+        List<MessageDto> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        
+        while (running || !queue.isEmpty()) {
+            try {
+                MessageDto first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                
+                // Fill the batch until it is full or the first message has waited one interval
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0 || !running) {
+                        break;
+                    }
+                    MessageDto next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in write-behind flusher", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Inserts the batch, retrying with a delay for as long as the database fails, until
+     * the shutdown timeout has passed.
+     */
+    private void flush(List<MessageDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        try {
+            while (true) {
+                try {
+                    batchWriter.insert(batch);
+                    return;
+                } catch (RuntimeException e) {
+                    if (System.nanoTime() - giveUpAtNanos >= 0) {
+                        logger.error("Dropping {} messages, still failing at shutdown: {}", batch.size(), e.getMessage());
+                        return;
+                    }
+                    if (e instanceof DataAccessException) {
+                        logger.warn("Database unavailable, holding {} messages: {}", batch.size(), e.getMessage());
+                    } else {
+                        logger.error("Unexpected error writing {} messages, retrying", batch.size(), e);
+                    }
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Dropping {} messages, interrupted while waiting for the database", batch.size());
+                    return;
+                }
+            }
+        } finally {
+            for (MessageDto message : batch) {
+                unflushed.remove(message.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Keeps the most recent messages of recently read rooms in bounded per-room rings,
+ * so that opening a room does not hit the database. Rooms are evicted in LRU order
+ * when either the room limit or the approximate memory limit is exceeded.
+ * <p>
+ * Rings are filled from the database on a miss and kept current by
+ * {@link #append}, {@link #replace} and {@link #remove}. Every mutation bumps a
+ * per-room epoch; a fill whose epoch is stale is discarded instead of installed,
+ * so a ring never misses a message that was saved while it was being loaded.
+ */
+@Component
+public class RecentMessageCache {
+    
+    private static final int EPOCH_STRIPES = 1024;
+    
+    // Rough per-message footprint beyond the character data
+    private static final long MESSAGE_OVERHEAD_BYTES = 160;
+    
+    @Value("${chat.cache.recent-messages.per-room:50}")
+    private int perRoomCapacity;
+    
+    @Value("${chat.cache.recent-messages.max-rooms:1000}")
+    private int maxRooms;
+    
+    @Value("${chat.cache.recent-messages.max-bytes:67108864}")
+    private long maxBytes;
+    
+    private final LinkedHashMap<Long, RoomRing> rooms = new LinkedHashMap<>(64, 0.75f, true);
+    
+    private final long[] epochs = new long[EPOCH_STRIPES];
+    
+    private long totalBytes;
+    
+    public int getPerRoomCapacity() {
+        return perRoomCapacity;
+    }
+    
+    /**
+     * Returns up to {@code limit} of the newest messages in the room, newest first,
+     * or empty if the cached ring cannot answer the request on its own.
+     */
+    public synchronized Optional<List<MessageDto>> getLatest(Long roomId, int limit) {
+        RoomRing ring = rooms.get(roomId);
+        if (ring == null || (limit > ring.size && !ring.complete)) {
+            return Optional.empty();
+        }
+        
+        int count = Math.min(limit, ring.size);
+        List<MessageDto> latest = new ArrayList<>(count);
+        for (int i = ring.size - 1; i >= ring.size - count; i--) {
+            latest.add(ring.get(i));
+        }
+        return Optional.of(latest);
+    }
+    
+    public synchronized long epoch(Long roomId) {
+        return epochs[stripe(roomId)];
+    }
+    
+    /**
+     * Installs messages read from the database as the room's ring, unless the room
+     * was modified since {@code epoch} was taken. Duplicates are dropped.
+     *
+     * @param complete whether {@code messages} is the room's entire history
+     * @return the newest {@code perRoomCapacity} messages, newest first
+     */
+    public synchronized List<MessageDto> load(Long roomId, Collection<MessageDto> messages,
+                                              boolean complete, long epoch) {
+        TreeMap<Long, MessageDto> byId = new TreeMap<>(Comparator.reverseOrder());
+        for (MessageDto message : messages) {
+            byId.putIfAbsent(message.getId(), message);
+        }
+        
+        List<MessageDto> latest = new ArrayList<>(Math.min(byId.size(), perRoomCapacity));
+        for (MessageDto message : byId.values()) {
+            if (latest.size() == perRoomCapacity) {
+                complete = false;
+                break;
+            }
+            latest.add(message);
+        }
+        
+        if (epochs[stripe(roomId)] == epoch) {
+            RoomRing ring = new RoomRing(perRoomCapacity);
+            for (int i = latest.size() - 1; i >= 0; i--) {
+                ring.addNewest(latest.get(i));
+            }
+            ring.complete = complete;
+            putRing(roomId, ring);
+        }
+        
+        return latest;
+    }
+    
+    public synchronized void append(MessageDto message) {
+        Long roomId = message.getRoomId();
+        epochs[stripe(roomId)]++;
+        
+        RoomRing ring = rooms.get(roomId);
+        if (ring != null) {
+            totalBytes += ring.insert(message);
+            enforceLimits(roomId);
+        }
+    }
+    
+    public synchronized void replace(MessageDto message) {
+        Long roomId = message.getRoomId();
+        epochs[stripe(roomId)]++;
+        
+        RoomRing ring = rooms.get(roomId);
+        if (ring != null) {
+            totalBytes += ring.replace(message);
+            enforceLimits(roomId);
+        }
+    }
+    
+    public synchronized void remove(Long roomId, Long messageId) {
+        epochs[stripe(roomId)]++;
+        
+        RoomRing ring = rooms.get(roomId);
+        if (ring != null) {
+            totalBytes += ring.remove(messageId);
+        }
+    }
+    
+    public synchronized void evict(Long roomId) {
+        epochs[stripe(roomId)]++;
+        
+        RoomRing ring = rooms.remove(roomId);
+        if (ring != null) {
+            totalBytes -= ring.bytes;
+        }
+    }
+    
+    private void putRing(Long roomId, RoomRing ring) {
+        RoomRing previous = rooms.put(roomId, ring);
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += ring.bytes;
+        enforceLimits(roomId);
+    }
+    
+    private void enforceLimits(Long touchedRoomId) {
+        Iterator<Map.Entry<Long, RoomRing>> eldest = rooms.entrySet().iterator();
+        while ((rooms.size() > maxRooms || totalBytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<Long, RoomRing> entry = eldest.next();
+            if (entry.getKey().equals(touchedRoomId) && rooms.size() == 1) {
+                break;
+            }
+            totalBytes -= entry.getValue().bytes;
+            eldest.remove();
+        }
+    }
+    
+    private static int stripe(Long roomId) {
+        return (Long.hashCode(roomId) & 0x7fffffff) % EPOCH_STRIPES;
+    }
+    
+    private static long estimateBytes(MessageDto message) {
+        long chars = (message.getContent() != null ? message.getContent().length() : 0)
+                + (message.getUsername() != null ? message.getUsername().length() : 0);
+        return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+    }
+    
+    /**
+     * Fixed-size ring ordered by message ID, oldest at index 0. Not thread-safe;
+     * guarded by the enclosing cache.
+     */
+    private static final class RoomRing {
+        
+        private final MessageDto[] slots;
+        private int head;
+        private int size;
+        private long bytes;
+        
+        // True when the ring holds the room's entire history
+        private boolean complete;
+        
+        RoomRing(int capacity) {
+            this.slots = new MessageDto[capacity];
+        }
+        
+        MessageDto get(int index) {
+            return slots[(head + index) % slots.length];
+        }
+        
+        private void set(int index, MessageDto message) {
+            slots[(head + index) % slots.length] = message;
+        }
+        
+        void addNewest(MessageDto message) {
+            set(size++, message);
+            bytes += estimateBytes(message);
+        }
+        
+        /**
+         * Inserts in ID order, evicting the oldest message when full. Messages older
+         * than everything in a full ring are not part of the recent window and are ignored.
+         *
+         * @return change in estimated bytes
+         */
+        long insert(MessageDto message) {
+            int position = size;
+            while (position > 0 && get(position - 1).getId() > message.getId()) {
+                position--;
+            }
+            if (position > 0 && get(position - 1).getId().equals(message.getId())) {
+                return replace(message);
+            }
+            
+            long delta = 0;
+            if (size == slots.length) {
+                if (position == 0) {
+                    return 0;
+                }
+                MessageDto evicted = get(0);
+                delta -= estimateBytes(evicted);
+                set(0, null);
+                head = (head + 1) % slots.length;
+                size--;
+                position--;
+                complete = false;
+            }
+            
+            for (int i = size; i > position; i--) {
+                set(i, get(i - 1));
+            }
+            set(position, message);
+            size++;
+            
+            delta += estimateBytes(message);
+            bytes += delta;
+            return delta;
+        }
+        
+        long replace(MessageDto message) {
+            int index = indexOf(message.getId());
+            if (index < 0) {
+                return 0;
+            }
+            long delta = estimateBytes(message) - estimateBytes(get(index));
+            set(index, message);
+            bytes += delta;
+            return delta;
+        }
+        
+        long remove(Long messageId) {
+            int index = indexOf(messageId);
+            if (index < 0) {
+                return 0;
+            }
+            long delta = -estimateBytes(get(index));
+            for (int i = index; i < size - 1; i++) {
+                set(i, get(i + 1));
+            }
+            set(--size, null);
+            bytes += delta;
+            return delta;
+        }
+        
+        private int indexOf(Long messageId) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (get(i).getId().equals(messageId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.chatapp.service;
+
+/**
+ * Thrown when a message is sent to a room that does not exist. It is the sender's
+ * mistake, so it carries no stack trace.
+ */
+public class RoomNotFoundException extends RuntimeException {
+    
+    public RoomNotFoundException() {
+        super("Room not found", null, false, false);
+    }
+}
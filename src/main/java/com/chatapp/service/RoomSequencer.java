@@ -0,0 +1,176 @@
+package com.chatapp.service;
+
+import com.chatapp.archive.MessageArchive;
+import com.chatapp.cluster.ClusterRelay;
+import com.chatapp.commitlog.MessageCommitLog;
+import com.chatapp.dto.MessageDto;
+import com.chatapp.repository.ChatRoomRepository;
+import com.chatapp.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Assigns each room's messages a sequence number that increases by one per message,
+ * so a client that saw seq N can ask for exactly what it missed. A room's counter is
+ * seeded the first time the room is used on this node, from the highest seq that is
+ * stored, archived or accepted but not yet persisted.
+ * <p>
+ * {@link #next} runs its action while holding the room's counter, so messages are
+ * persisted and published in sequence order. A save that fails still uses up its
+ * number; clients treat such a gap like any other and find nothing to fetch.
+ * <p>
+ * With a cluster relay, several nodes accept messages for the same room, so the
+ * authoritative counter is {@code chat_rooms.last_seq}: each number is taken with an
+ * atomic increment of the room's row, which the first use on a node raises to the seed
+ * above. Numbers never repeat across nodes, and each node still publishes its own
+ * messages in order; messages taken on different nodes can reach a subscriber in either
+ * order, and clients place them by seq.
+ * <p>
+ * Counters of rooms idle for {@code chat.sequencer.idle-eviction-ms} are dropped and
+ * seeded again on the room's next message. Callers must only pass rooms that exist.
+ */
+@Component
+public class RoomSequencer {
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private ChatRoomRepository chatRoomRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired(required = false)
+    private ClusterRelay clusterRelay;
+    
+    @Autowired(required = false)
+    private MessageArchive archive;
+    
+    @Autowired(required = false)
+    private MessageWriteBehindQueue writeBehindQueue;
+    
+    @Autowired(required = false)
+    private MessageCommitLog commitLog;
+    
+    @Value("${chat.sequencer.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+    
+    private final Map<Long, RoomSequence> rooms = new ConcurrentHashMap<>();
+    
+    private ScheduledExecutorService evictor;
+    
+    @PostConstruct
+    public void start() {
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sequencer-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, idleEvictionMs, idleEvictionMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdown();
+    }
+    
+    /**
+     * Takes the room's next sequence number and runs {@code action} with it before any
+     * later number is handed out.
+     */
+    public <T> T next(Long roomId, LongFunction<T> action) {
+        while (true) {
+            RoomSequence sequence = rooms.computeIfAbsent(roomId, id -> new RoomSequence());
+            synchronized (sequence) {
+                if (sequence.evicted) {
+                    // Dropped while we waited for it; the replacement seeds from this one's messages
+                    continue;
+                }
+                if (!sequence.seeded) {
+                    sequence.last = highestSeq(roomId);
+                    if (clusterRelay != null) {
+                        chatRoomRepository.raiseLastSeq(roomId, sequence.last);
+                    }
+                    sequence.seeded = true;
+                }
+                sequence.lastUsedNanos = System.nanoTime();
+                sequence.last = clusterRelay != null ? takeSharedSeq(roomId) : sequence.last + 1;
+                return action.apply(sequence.last);
+            }
+        }
+    }
+    
+    private long takeSharedSeq(Long roomId) {
+        return transactionTemplate.execute(status -> {
+            chatRoomRepository.incrementLastSeq(roomId);
+            return chatRoomRepository.findLastSeqById(roomId)
+                    .orElseThrow(RoomNotFoundException::new);
+        });
+    }
+    
+    private long highestSeq(Long roomId) {
+        long highest = messageRepository.findMaxSeqByRoomId(roomId).orElse(0L);
+        if (archive != null) {
+            highest = Math.max(highest, archive.getMaxSeq(roomId));
+        }
+        // A counter seeded again after eviction must not reuse numbers still on their way to the table
+        if (commitLog != null) {
+            highest = Math.max(highest, maxSeq(commitLog.getUnprojected(roomId)));
+        }
+        if (writeBehindQueue != null) {
+            highest = Math.max(highest, maxSeq(writeBehindQueue.getUnflushed(roomId)));
+        }
+        return highest;
+    }
+    
+    private static long maxSeq(List<MessageDto> messages) {
+        long max = 0;
+        for (MessageDto message : messages) {
+            if (message.getSeq() != null) {
+                max = Math.max(max, message.getSeq());
+            }
+        }
+        return max;
+    }
+    
+    private void evictIdle() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleEvictionMs);
+        for (Map.Entry<Long, RoomSequence> entry : rooms.entrySet()) {
+            RoomSequence sequence = entry.getValue();
+            synchronized (sequence) {
+                if (now - sequence.lastUsedNanos >= idleNanos) {
+                    sequence.evicted = true;
+                    rooms.remove(entry.getKey(), sequence);
+                }
+            }
+        }
+    }
+    
+    /**
+     * A room's last number assigned on this node, guarded by the instance's monitor.
+     */
+    private static final class RoomSequence {
+        
+        private boolean seeded;
+        
+        private boolean evicted;
+        
+        private long last;
+        
+        private long lastUsedNanos = System.nanoTime();
+    }
+}
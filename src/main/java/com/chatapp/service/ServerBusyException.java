@@ -0,0 +1,12 @@
+package com.chatapp.service;
+
+/**
+ * Thrown when a message cannot be accepted because the write path is backed up. It is
+ * expected under load, so it carries no stack trace.
+ */
+public class ServerBusyException extends RuntimeException {
+    
+    public ServerBusyException() {
+        super("Server is busy, message was not accepted", null, false, false);
+    }
+}
@@ -3,6 +3,7 @@ package com.chatapp.service;
 import com.chatapp.dto.UserDto;
 import com.chatapp.entity.User;
 import com.chatapp.repository.UserRepository;
+import com.chatapp.search.TypeaheadIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -11,7 +12,10 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -24,6 +28,9 @@ public class UserService implements UserDetailsService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private TypeaheadIndex typeaheadIndex;
+    
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
@@ -53,6 +60,7 @@ public class UserService implements UserDetailsService {
         user.setActive(true);
         
         User savedUser = userRepository.save(user);
+        typeaheadIndex.indexUser(savedUser.getId(), savedUser.getUsername(), savedUser.getEmail());
         
         UserDto savedUserDto = new UserDto();
         savedUserDto.setId(savedUser.getId());
@@ -78,8 +86,21 @@ public class UserService implements UserDetailsService {
                 .collect(Collectors.toList());
     }
     
-    public List<UserDto> searchUsers(String keyword) {
-        return userRepository.findByUsernameOrEmailContaining(keyword).stream()
+    public List<UserDto> searchUsers(String keyword, int limit) {
+        if (!typeaheadIndex.isReady()) {
+            return userRepository.findByUsernameOrEmailContaining(keyword).stream()
+                    .limit(limit)
+                    .map(this::convertToDto)
+                    .collect(Collectors.toList());
+        }
+        
+        List<Long> userIds = typeaheadIndex.searchUsers(keyword, limit);
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            rank.put(userIds.get(i), i);
+        }
+        return userRepository.findAllById(userIds).stream()
+                .sorted(Comparator.comparing(user -> rank.get(user.getId())))
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
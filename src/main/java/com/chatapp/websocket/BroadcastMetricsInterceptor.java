@@ -0,0 +1,52 @@
+package com.chatapp.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts broadcast frames leaving through the client outbound channel, split by whether
+ * the frame still references the payload buffer that {@link RoomBroadcaster} encoded.
+ * A healthy broker path shows {@code chat.broadcast.deliveries{payload=shared}} growing
+ * with subscriber count while {@code chat.broadcast.encodes} grows only with messages.
+ */
+@Component
+public class BroadcastMetricsInterceptor implements ChannelInterceptor {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Counter sharedDeliveries;
+    
+    private Counter copiedDeliveries;
+    
+    @PostConstruct
+    public void init() {
+        sharedDeliveries = Counter.builder("chat.broadcast.deliveries")
+                .description("Broadcast frames delivered to subscriber sessions")
+                .tag("payload", "shared")
+                .register(meterRegistry);
+        copiedDeliveries = Counter.builder("chat.broadcast.deliveries")
+                .description("Broadcast frames delivered to subscriber sessions")
+                .tag("payload", "copied")
+                .register(meterRegistry);
+    }
+    
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (message.getHeaders().get(RoomBroadcaster.ENCODED_PAYLOAD_HEADER) instanceof EncodedPayload encoded) {
+            if (encoded.isSharedBy(message.getPayload())) {
+                sharedDeliveries.increment();
+            } else {
+                copiedDeliveries.increment();
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,83 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.websocket.EncodedPayload.CompactForm;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+
+/**
+ * Compact wire encoding of {@link MessageDto}, for clients that send
+ * {@code chat-encoding: compact} in their CONNECT frame.
+ * <p>
+ * A compact message is a positional JSON array rather than a binary record, because
+ * SockJS transports carry text only:
+ * <pre>
+ * [id, roomId, user, createdAt, type, content, edited, editedAt, seq]
+ * </pre>
+ * {@code id} is a decimal string, because message IDs exceed the integer range JavaScript
+ * numbers represent exactly. Timestamps are epoch milliseconds, {@code type} is the {@link com.chatapp.entity.Message.MessageType}
+ * ordinal, {@code edited} is 0 or 1, and {@code seq} is the message's position in the room. {@code user} is the numeric user ID; the
+ * username travels once per session in the {@value #USER_NAMES_HEADER} header, a JSON
+ * object of user ID to username, on the first frame that references the user (see
+ * {@link SessionWireFormats}). Messages without a user, such as system notices, carry
+ * the display name string instead.
+ * {@code app.js} decodes this layout; keep the two in sync.
+ */
+@Component
+public class CompactMessageCodec {
+    
+    public static final String ENCODING_HEADER = "chat-encoding";
+    
+    public static final String COMPACT_ENCODING = "compact";
+    
+    public static final String USER_NAMES_HEADER = "chat-users";
+    
+    public static final MimeType CONTENT_TYPE = new MimeType("application", "vnd.chat.compact+json");
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    public CompactForm encode(MessageDto message) {
+        Object user = message.getUserId() != null ? message.getUserId() : message.getUsername();
+        Object[] fields = {
+                message.getId() != null ? message.getId().toString() : null,
+                message.getRoomId(),
+                user,
+                toEpochMilli(message.getCreatedAt()),
+                message.getMessageType() != null ? message.getMessageType().ordinal() : null,
+                message.getContent(),
+                message.isEdited() ? 1 : 0,
+                toEpochMilli(message.getEditedAt()),
+                message.getSeq()
+        };
+        try {
+            Map<Long, String> users = message.getUserId() != null && message.getUsername() != null
+                    ? Map.of(message.getUserId(), message.getUsername()) : Map.of();
+            return new CompactForm(objectMapper.writeValueAsBytes(fields), users);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode compact message", e);
+        }
+    }
+    
+    /**
+     * Encodes user definitions as the value of the {@value #USER_NAMES_HEADER} header.
+     */
+    public String encodeUserNames(Map<Long, String> users) {
+        try {
+            return objectMapper.writeValueAsString(users);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode user names", e);
+        }
+    }
+    
+    private static Long toEpochMilli(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null;
+    }
+}
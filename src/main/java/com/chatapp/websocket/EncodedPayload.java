@@ -0,0 +1,88 @@
+package com.chatapp.websocket;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A broadcast payload serialized once. The same array is handed to every subscriber
+ * session and must never be modified after encoding.
+ * <p>
+ * Chat messages also have a compact form for sessions that negotiated it. It is encoded
+ * on first use, also once, and shared by all of those sessions.
+ * <p>
+ * A payload may also be a batch: a JSON array of several messages that
+ * {@link RoomCoalescer} delivers as one frame.
+ */
+public final class EncodedPayload {
+    
+    private final byte[] bytes;
+    
+    private final Supplier<CompactForm> compactEncoder;
+    
+    private final int batchSize;
+    
+    private volatile CompactForm compact;
+    
+    EncodedPayload(byte[] bytes) {
+        this(bytes, null);
+    }
+    
+    EncodedPayload(byte[] bytes, Supplier<CompactForm> compactEncoder) {
+        this(bytes, compactEncoder, 0);
+    }
+    
+    EncodedPayload(byte[] bytes, Supplier<CompactForm> compactEncoder, int batchSize) {
+        this.bytes = bytes;
+        this.compactEncoder = compactEncoder;
+        this.batchSize = batchSize;
+    }
+    
+    byte[] bytes() {
+        return bytes;
+    }
+    
+    public int length() {
+        return bytes.length;
+    }
+    
+    /**
+     * Number of messages in a batch payload, or 0 for a single message.
+     */
+    int batchSize() {
+        return batchSize;
+    }
+    
+    /**
+     * Returns the compact form, or null if the payload has none.
+     */
+    CompactForm compact() {
+        if (compactEncoder == null) {
+            return null;
+        }
+        CompactForm result = compact;
+        if (result == null) {
+            synchronized (this) {
+                result = compact;
+                if (result == null) {
+                    result = compactEncoder.get();
+                    compact = result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Whether {@code payload} is one of this payload's buffers itself rather than a copy.
+     */
+    public boolean isSharedBy(Object payload) {
+        CompactForm compactForm = compact;
+        return payload == bytes || (compactForm != null && payload == compactForm.bytes());
+    }
+    
+    /**
+     * Compact encoding of a chat message or batch, with the users it references for interning.
+     */
+    record CompactForm(byte[] bytes, Map<Long, String> users) {
+    }
+}
@@ -0,0 +1,290 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.PresenceDeltaDto;
+import com.chatapp.security.ChatPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks which users are online in which rooms on this node. A user is online in a room
+ * while at least one of their sessions subscribes to the room topic, so several tabs
+ * count once, and a disconnect removes the session from every room it was in.
+ * <p>
+ * Changes are not announced one by one. Rooms that changed are marked dirty, and every
+ * flush interval each dirty room publishes one {@link PresenceDeltaDto} to
+ * {@code /topic/room.{id}.presence}, computed against what was last announced.
+ * <p>
+ * Presence is node-local. Deltas go to this node's subscribers only and are not relayed,
+ * since a delta computed from one node's sessions would be wrong on the others. With a
+ * cluster relay, both the deltas and {@link #getOnlineUsernames} cover only the users
+ * connected to this node.
+ */
+@Component
+public class PresenceRegistry {
+    
+    public static final String PRESENCE_TOPIC_SUFFIX = ".presence";
+    
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+    
+    @Autowired
+    private RoomBroadcaster roomBroadcaster;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.presence.flush-interval-ms:500}")
+    private long flushIntervalMs;
+    
+    private final Map<Long, RoomPresence> rooms = new ConcurrentHashMap<>();
+    
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    
+    private final Set<Long> dirtyRooms = ConcurrentHashMap.newKeySet();
+    
+    private ScheduledExecutorService flusher;
+    
+    private Counter deltas;
+    
+    @PostConstruct
+    public void start() {
+        deltas = Counter.builder("chat.presence.deltas")
+                .description("Presence deltas published to rooms")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.sessions", sessions, Map::size)
+                .description("Sessions present in at least one room")
+                .register(meterRegistry);
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+    }
+    
+    /**
+     * Returns the usernames currently online in the room on this node, in no particular order.
+     */
+    public List<String> getOnlineUsernames(Long roomId) {
+        RoomPresence room = rooms.get(roomId);
+        return room != null ? room.onlineUsernames() : List.of();
+    }
+    
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Long roomId = RoomSubscriptionRegistry.parseRoomId(accessor.getDestination());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (roomId == null || sessionId == null || subscriptionId == null
+                || !(event.getUser() instanceof ChatPrincipal principal)) {
+            return;
+        }
+        
+        SessionPresence session = sessions.computeIfAbsent(sessionId,
+                id -> new SessionPresence(principal.getUserId(), principal.getName()));
+        if (session.subscribe(subscriptionId, roomId)) {
+            // Atomic with the idle-room removal in flush()
+            rooms.compute(roomId, (id, room) -> {
+                RoomPresence presence = room != null ? room : new RoomPresence();
+                presence.add(session.userId, session.username, sessionId);
+                return presence;
+            });
+            dirtyRooms.add(roomId);
+        }
+    }
+    
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        SessionPresence session = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (session != null && accessor.getSubscriptionId() != null) {
+            Long roomId = session.unsubscribe(accessor.getSubscriptionId());
+            if (roomId != null) {
+                removeFromRoom(roomId, session, accessor.getSessionId());
+            }
+        }
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionPresence session = sessions.remove(event.getSessionId());
+        if (session != null) {
+            for (Long roomId : session.leaveAll()) {
+                removeFromRoom(roomId, session, event.getSessionId());
+            }
+        }
+    }
+    
+    /**
+     * Takes the session out of a room it still subscribes to, for clients that announce
+     * leaving before they close the connection.
+     */
+    public void leave(String sessionId, Long roomId) {
+        SessionPresence session = sessions.get(sessionId);
+        if (session != null && session.leave(roomId)) {
+            removeFromRoom(roomId, session, sessionId);
+        }
+    }
+    
+    private void removeFromRoom(Long roomId, SessionPresence session, String sessionId) {
+        RoomPresence room = rooms.get(roomId);
+        if (room != null) {
+            room.remove(session.userId, sessionId);
+            dirtyRooms.add(roomId);
+        }
+    }
+    
+    private void flush() {
+        for (Long roomId : dirtyRooms) {
+            dirtyRooms.remove(roomId);
+            RoomPresence room = rooms.get(roomId);
+            if (room == null) {
+                continue;
+            }
+            try {
+                PresenceDeltaDto delta = room.takeDelta(roomId);
+                rooms.computeIfPresent(roomId, (id, current) -> current.isIdle() ? null : current);
+                if (delta != null) {
+                    deltas.increment();
+                    roomBroadcaster.sendLocal(RoomSubscriptionRegistry.ROOM_TOPIC_PREFIX + roomId + PRESENCE_TOPIC_SUFFIX,
+                            roomBroadcaster.encode(delta));
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to publish presence for room {}", roomId, e);
+            }
+        }
+    }
+    
+    /**
+     * A session's room subscriptions. The user never changes for a session.
+     */
+    private static final class SessionPresence {
+        
+        private final Long userId;
+        
+        private final String username;
+        
+        // subscription ID -> room ID
+        private final Map<String, Long> subscriptions = new HashMap<>();
+        
+        SessionPresence(Long userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+        
+        /**
+         * Returns true if this is the session's first subscription to the room.
+         */
+        synchronized boolean subscribe(String subscriptionId, Long roomId) {
+            boolean first = !subscriptions.containsValue(roomId);
+            subscriptions.put(subscriptionId, roomId);
+            return first;
+        }
+        
+        /**
+         * Returns the room the session left, or null if it still subscribes to it another way.
+         */
+        synchronized Long unsubscribe(String subscriptionId) {
+            Long roomId = subscriptions.remove(subscriptionId);
+            return roomId != null && !subscriptions.containsValue(roomId) ? roomId : null;
+        }
+        
+        synchronized boolean leave(Long roomId) {
+            return subscriptions.values().removeIf(roomId::equals);
+        }
+        
+        synchronized Set<Long> leaveAll() {
+            Set<Long> roomIds = new HashSet<>(subscriptions.values());
+            subscriptions.clear();
+            return roomIds;
+        }
+    }
+    
+    /**
+     * Online users of one room and the set last announced to subscribers.
+     */
+    private static final class RoomPresence {
+        
+        // user ID -> sessions of that user in the room
+        private final Map<Long, Set<String>> sessionsByUser = new HashMap<>();
+        
+        private final Map<Long, String> usernames = new HashMap<>();
+        
+        private final Map<Long, String> announced = new HashMap<>();
+        
+        synchronized void add(Long userId, String username, String sessionId) {
+            sessionsByUser.computeIfAbsent(userId, id -> new HashSet<>()).add(sessionId);
+            usernames.put(userId, username);
+        }
+        
+        synchronized void remove(Long userId, String sessionId) {
+            Set<String> userSessions = sessionsByUser.get(userId);
+            if (userSessions != null && userSessions.remove(sessionId) && userSessions.isEmpty()) {
+                sessionsByUser.remove(userId);
+                usernames.remove(userId);
+            }
+        }
+        
+        synchronized List<String> onlineUsernames() {
+            return new ArrayList<>(usernames.values());
+        }
+        
+        /**
+         * Returns the changes since the last call, or null if there are none.
+         */
+        synchronized PresenceDeltaDto takeDelta(Long roomId) {
+            List<String> joined = new ArrayList<>();
+            List<String> left = new ArrayList<>();
+            usernames.forEach((userId, username) -> {
+                if (!announced.containsKey(userId)) {
+                    joined.add(username);
+                }
+            });
+            announced.forEach((userId, username) -> {
+                if (!usernames.containsKey(userId)) {
+                    left.add(username);
+                }
+            });
+            if (joined.isEmpty() && left.isEmpty()) {
+                return null;
+            }
+            announced.clear();
+            announced.putAll(usernames);
+            return new PresenceDeltaDto(roomId, joined, left, usernames.size());
+        }
+        
+        synchronized boolean isIdle() {
+            return usernames.isEmpty() && announced.isEmpty();
+        }
+    }
+}
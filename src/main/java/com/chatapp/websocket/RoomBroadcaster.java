@@ -0,0 +1,184 @@
+package com.chatapp.websocket;
+
+import com.chatapp.cluster.ClusterMessage;
+import com.chatapp.cluster.ClusterRelay;
+import com.chatapp.dto.MessageDto;
+import com.chatapp.service.MessageService;
+import com.chatapp.websocket.EncodedPayload.CompactForm;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+
+/**
+ * Sends room broadcasts with a payload that is serialized to JSON exactly once.
+ * <p>
+ * The encoded bytes are the message payload of every subscriber's frame, whether the
+ * frames are produced by {@link RoomFanout} for room topics or by the simple broker for
+ * other destinations, so each session's frame references the same buffer. The {@link #ENCODED_PAYLOAD_HEADER} header lets
+ * {@link BroadcastMetricsInterceptor} verify that on the way out.
+ * <p>
+ * When a {@link ClusterRelay} is configured, every broadcast is also relayed to the other
+ * nodes, and broadcasts relayed from them are delivered to local subscribers only. Relayed
+ * chat messages are also recorded through {@link MessageService#applyRelayedMessage}, so
+ * this node's history, resume and search answers include them.
+ */
+@Component
+public class RoomBroadcaster {
+    
+    public static final String ENCODED_PAYLOAD_HEADER = "chatEncodedPayload";
+    
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    
+    @Autowired
+    private RoomCoalescer roomCoalescer;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private CompactMessageCodec compactCodec;
+    
+    @Autowired
+    private MessageService messageService;
+    
+    @Autowired(required = false)
+    private ClusterRelay clusterRelay;
+    
+    private Counter encodes;
+    
+    private DistributionSummary encodedBytes;
+    
+    private Counter compactEncodes;
+    
+    private DistributionSummary compactEncodedBytes;
+    
+    @PostConstruct
+    public void init() {
+        encodes = Counter.builder("chat.broadcast.encodes")
+                .description("Broadcast payloads serialized")
+                .tag("format", "json")
+                .register(meterRegistry);
+        encodedBytes = DistributionSummary.builder("chat.broadcast.encoded.bytes")
+                .description("Size of serialized broadcast payloads")
+                .baseUnit("bytes")
+                .tag("format", "json")
+                .register(meterRegistry);
+        compactEncodes = Counter.builder("chat.broadcast.encodes")
+                .description("Broadcast payloads serialized")
+                .tag("format", "compact")
+                .register(meterRegistry);
+        compactEncodedBytes = DistributionSummary.builder("chat.broadcast.encoded.bytes")
+                .description("Size of serialized broadcast payloads")
+                .baseUnit("bytes")
+                .tag("format", "compact")
+                .register(meterRegistry);
+        
+        if (clusterRelay != null) {
+            clusterRelay.start(this::deliverFromCluster);
+        }
+    }
+    
+    public void broadcastToRoom(Long roomId, Object payload) {
+        broadcastToRoom(roomId, encode(payload));
+    }
+    
+    /**
+     * Publishes an encoded payload to a room topic through {@link RoomCoalescer}.
+     */
+    public void broadcastToRoom(Long roomId, EncodedPayload payload) {
+        String destination = RoomSubscriptionRegistry.ROOM_TOPIC_PREFIX + roomId;
+        roomCoalescer.publish(roomId, payload);
+        relay(destination, payload);
+    }
+    
+    public EncodedPayload encode(Object payload) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(payload);
+            encodes.increment();
+            encodedBytes.record(bytes.length);
+            if (payload instanceof MessageDto message) {
+                return new EncodedPayload(bytes, () -> encodeCompact(message));
+            }
+            return new EncodedPayload(bytes);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode broadcast payload", e);
+        }
+    }
+    
+    private CompactForm encodeCompact(MessageDto message) {
+        CompactForm compact = compactCodec.encode(message);
+        compactEncodes.increment();
+        compactEncodedBytes.record(compact.bytes().length);
+        return compact;
+    }
+    
+    /**
+     * Publishes an already encoded payload through the broker; may be called for several
+     * destinations with the same payload. Room topics go through {@link #broadcastToRoom}.
+     */
+    public void send(String destination, EncodedPayload payload) {
+        deliver(destination, payload);
+        relay(destination, payload);
+    }
+    
+    /**
+     * Publishes an already encoded payload to this node's subscribers only, for state
+     * that is tracked per node and must not be relayed.
+     */
+    public void sendLocal(String destination, EncodedPayload payload) {
+        deliver(destination, payload);
+    }
+    
+    private void deliver(String destination, EncodedPayload payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(ENCODED_PAYLOAD_HEADER, payload);
+        accessor.setLeaveMutable(true);
+        
+        MessageHeaders headers = accessor.getMessageHeaders();
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload.bytes(), headers));
+    }
+    
+    private void relay(String destination, EncodedPayload payload) {
+        if (clusterRelay != null) {
+            clusterRelay.publish(destination, payload.bytes());
+        }
+    }
+    
+    private void deliverFromCluster(ClusterMessage message) {
+        Long roomId = RoomSubscriptionRegistry.parseRoomId(message.destination());
+        if (roomId != null) {
+            // Room topics carry chat messages, decoded once for this node's caches and the compact form
+            MessageDto decoded = decodeMessage(message.payload());
+            messageService.applyRelayedMessage(decoded);
+            roomCoalescer.publish(roomId, new EncodedPayload(message.payload(), () -> encodeCompact(decoded)));
+        } else {
+            deliver(message.destination(), new EncodedPayload(message.payload()));
+        }
+    }
+    
+    private MessageDto decodeMessage(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, MessageDto.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode relayed message", e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.chatapp.websocket;
+
+import com.chatapp.websocket.EncodedPayload.CompactForm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Publishes room broadcasts to {@link RoomFanout}, batching them in busy rooms.
+ * <p>
+ * Each room's rate is measured over one-second intervals. While a room's rate is at or
+ * above the threshold, messages are held for up to the window and then sent as one
+ * frame per subscriber whose body is a JSON array of the messages, marked with the
+ * {@value #BATCH_HEADER} header. The batch body is spliced together from the messages'
+ * existing encodings, so nothing is serialized again. Quiet rooms are published
+ * immediately, as before.
+ */
+@Component
+public class RoomCoalescer {
+    
+    public static final String BATCH_HEADER = "chat-batch";
+    
+    private static final Logger logger = LoggerFactory.getLogger(RoomCoalescer.class);
+    
+    private static final long RATE_INTERVAL_MS = 1000;
+    
+    @Autowired
+    private RoomFanout roomFanout;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.websocket.coalesce.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${chat.websocket.coalesce.threshold-per-second:20}")
+    private int thresholdPerSecond;
+    
+    @Value("${chat.websocket.coalesce.window-ms:50}")
+    private long windowMs;
+    
+    @Value("${chat.websocket.coalesce.max-batch-size:100}")
+    private int maxBatchSize;
+    
+    private final Map<Long, RoomState> rooms = new ConcurrentHashMap<>();
+    
+    private ScheduledExecutorService flusher;
+    
+    private Counter batches;
+    
+    private DistributionSummary batchSizes;
+    
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "room-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        batches = Counter.builder("chat.coalesce.batches")
+                .description("Batched frames published to rooms")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("chat.coalesce.batch.size")
+                .description("Messages per batched frame")
+                .register(meterRegistry);
+        Gauge.builder("chat.coalesce.rooms.active", this, RoomCoalescer::activeRooms)
+                .description("Rooms currently batching messages")
+                .register(meterRegistry);
+        Gauge.builder("chat.coalesce.window", () -> enabled ? windowMs : 0)
+                .description("Configured batching window; 0 when coalescing is disabled")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("chat.coalesce.threshold", () -> thresholdPerSecond)
+                .description("Messages per second at which a room starts batching")
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        rooms.keySet().forEach(this::flush);
+    }
+    
+    public void publish(Long roomId, EncodedPayload payload) {
+        if (!enabled) {
+            publishNow(roomId, payload);
+            return;
+        }
+        
+        RoomState state = rooms.computeIfAbsent(roomId, id -> new RoomState());
+        // Publishing under the room's lock keeps immediate and batched frames in order
+        synchronized (state) {
+            state.countMessage(System.currentTimeMillis());
+            if (state.pending.isEmpty() && !state.isBusy(thresholdPerSecond)) {
+                publishNow(roomId, payload);
+                return;
+            }
+            
+            state.pending.add(payload);
+            if (state.pending.size() >= maxBatchSize) {
+                flushLocked(roomId, state);
+            } else if (state.pending.size() == 1) {
+                flusher.schedule(() -> flush(roomId), windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    private void flush(Long roomId) {
+        RoomState state = rooms.get(roomId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            flushLocked(roomId, state);
+        }
+    }
+    
+    private void flushLocked(Long roomId, RoomState state) {
+        List<EncodedPayload> pending = state.pending;
+        if (pending.isEmpty()) {
+            return;
+        }
+        state.pending = new ArrayList<>();
+        
+        try {
+            if (pending.size() == 1) {
+                publishNow(roomId, pending.get(0));
+                return;
+            }
+            batches.increment();
+            batchSizes.record(pending.size());
+            publishNow(roomId, batch(pending));
+        } catch (RuntimeException e) {
+            logger.error("Failed to publish batch of {} messages to room {}", pending.size(), roomId, e);
+        }
+    }
+    
+    private void publishNow(Long roomId, EncodedPayload payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(RoomSubscriptionRegistry.ROOM_TOPIC_PREFIX + roomId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(RoomBroadcaster.ENCODED_PAYLOAD_HEADER, payload);
+        
+        roomFanout.publish(roomId, accessor.getMessageHeaders(), payload);
+    }
+    
+    private static EncodedPayload batch(List<EncodedPayload> payloads) {
+        byte[] json = joinArray(payloads, EncodedPayload::bytes);
+        return new EncodedPayload(json, () -> compactBatch(payloads), payloads.size());
+    }
+    
+    private static CompactForm compactBatch(List<EncodedPayload> payloads) {
+        Map<Long, String> users = new LinkedHashMap<>();
+        for (EncodedPayload payload : payloads) {
+            CompactForm compact = payload.compact();
+            if (compact == null) {
+                return null;
+            }
+            users.putAll(compact.users());
+        }
+        return new CompactForm(joinArray(payloads, payload -> payload.compact().bytes()), users);
+    }
+    
+    private static byte[] joinArray(List<EncodedPayload> payloads, Function<EncodedPayload, byte[]> encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(encoding.apply(payloads.get(i)));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+    
+    private double activeRooms() {
+        long now = System.currentTimeMillis();
+        int active = 0;
+        for (RoomState state : rooms.values()) {
+            synchronized (state) {
+                if (state.isBusy(thresholdPerSecond) && now - state.intervalStart < 2 * RATE_INTERVAL_MS) {
+                    active++;
+                }
+            }
+        }
+        return active;
+    }
+    
+    /**
+     * A room's rate counters and pending messages, guarded by the instance's monitor.
+     */
+    private static final class RoomState {
+        
+        private long intervalStart;
+        
+        private int intervalCount;
+        
+        private int previousIntervalCount;
+        
+        private List<EncodedPayload> pending = new ArrayList<>();
+        
+        void countMessage(long now) {
+            if (now - intervalStart >= RATE_INTERVAL_MS) {
+                // A gap of more than one interval means the room went quiet
+                previousIntervalCount = now - intervalStart < 2 * RATE_INTERVAL_MS ? intervalCount : 0;
+                intervalStart = now;
+                intervalCount = 0;
+            }
+            intervalCount++;
+        }
+        
+        /**
+         * Busy when either the last full interval or the current one reached the threshold.
+         */
+        boolean isBusy(int threshold) {
+            return previousIntervalCount >= threshold || intervalCount >= threshold;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.chatapp.websocket;
+
+import com.chatapp.websocket.EncodedPayload.CompactForm;
+import com.chatapp.websocket.RoomSubscriptionRegistry.RoomSubscribers;
+import com.chatapp.websocket.RoomSubscriptionRegistry.Subscriber;
+import com.chatapp.websocket.SessionWireFormats.CompactSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers room broadcasts to subscriber sessions, bypassing the simple broker's
+ * single-threaded subscriber loop.
+ * <p>
+ * Rooms below the threshold are delivered inline on the publishing thread. Larger rooms
+ * are handed partition by partition to single-threaded lanes, so delivery runs on as
+ * many cores as there are lanes. Ordering per subscriber holds because:
+ * <ul>
+ *   <li>a session always maps to the same lane, and lanes run tasks in FIFO order;</li>
+ *   <li>publishes to one room are handed off one at a time;</li>
+ *   <li>a room keeps using the lanes while it has partitioned deliveries in flight,
+ *       even after dropping below the threshold;</li>
+ *   <li>each session's frames pass through one {@link OrderedMessageChannelDecorator},
+ *       so the outbound thread pool cannot reorder them.</li>
+ * </ul>
+ */
+@Component
+public class RoomFanout {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RoomFanout.class);
+    
+    // OrderedMessageChannelDecorator logs through commons-logging
+    private static final Log orderedSendLog = LogFactory.getLog(RoomFanout.class);
+    
+    @Autowired
+    private RoomSubscriptionRegistry subscriptionRegistry;
+    
+    @Autowired
+    private SessionWireFormats wireFormats;
+    
+    @Autowired
+    private CompactMessageCodec compactCodec;
+    
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.websocket.fanout.threshold:1000}")
+    private int threshold;
+    
+    private final Map<String, MessageChannel> sessionChannels = new ConcurrentHashMap<>();
+    
+    private ThreadPoolExecutor[] lanes;
+    
+    private Counter inlineBroadcasts;
+    
+    private Counter partitionedBroadcasts;
+    
+    // Indexed by RoomTier ordinal
+    private final Timer[] deliveryTimers = new Timer[RoomTier.values().length];
+    
+    private final DistributionSummary[] recipientSummaries = new DistributionSummary[RoomTier.values().length];
+    
+    @PostConstruct
+    public void start() {
+        lanes = new ThreadPoolExecutor[subscriptionRegistry.getPartitionCount()];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "room-fanout-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        inlineBroadcasts = Counter.builder("chat.fanout.broadcasts")
+                .description("Room broadcasts by delivery mode")
+                .tag("mode", "inline")
+                .register(meterRegistry);
+        partitionedBroadcasts = Counter.builder("chat.fanout.broadcasts")
+                .description("Room broadcasts by delivery mode")
+                .tag("mode", "partitioned")
+                .register(meterRegistry);
+        Gauge.builder("chat.fanout.lane.queued", this, RoomFanout::queuedTasks)
+                .description("Partition deliveries waiting in fan-out lanes")
+                .register(meterRegistry);
+        for (RoomTier tier : RoomTier.values()) {
+            deliveryTimers[tier.ordinal()] = Timer.builder("chat.fanout.latency")
+                    .description("Time from publishing a room broadcast until every subscriber's frame is queued")
+                    .tag("tier", tier.tag())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            recipientSummaries[tier.ordinal()] = DistributionSummary.builder("chat.fanout.recipients")
+                    .description("Subscribers a room broadcast was delivered to")
+                    .tag("tier", tier.tag())
+                    .register(meterRegistry);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+    
+    /**
+     * Delivers the payload to every current subscriber of the room.
+     *
+     * @param headers headers shared by every frame, including destination and content type
+     */
+    public void publish(Long roomId, MessageHeaders headers, EncodedPayload payload) {
+        RoomSubscribers subscribers = subscriptionRegistry.get(roomId);
+        if (subscribers == null) {
+            return;
+        }
+        
+        long start = System.nanoTime();
+        int size = subscribers.size();
+        RoomTier tier = RoomTier.of(size);
+        recipientSummaries[tier.ordinal()].record(size);
+        Timer deliveryTimer = deliveryTimers[tier.ordinal()];
+        
+        // Concurrent publishers to one room take turns, so every subscriber sees the same order.
+        // Only the hand-off is serialized; partitioned delivery itself runs on the lanes.
+        synchronized (subscribers) {
+            AtomicInteger pending = subscribers.pendingDeliveries();
+            if (size < threshold && pending.get() == 0) {
+                inlineBroadcasts.increment();
+                for (int i = 0; i < subscribers.partitionCount(); i++) {
+                    deliver(subscribers.partition(i), headers, payload);
+                }
+                deliveryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return;
+            }
+            
+            partitionedBroadcasts.increment();
+            // The lane that finishes this broadcast's last partition records its latency
+            AtomicInteger remaining = new AtomicInteger(subscribers.partitionCount());
+            for (int i = 0; i < subscribers.partitionCount(); i++) {
+                Set<Subscriber> partition = subscribers.partition(i);
+                if (partition.isEmpty()) {
+                    finishPartition(remaining, deliveryTimer, start);
+                    continue;
+                }
+                pending.incrementAndGet();
+                lanes[i].execute(() -> {
+                    try {
+                        deliver(partition, headers, payload);
+                    } finally {
+                        pending.decrementAndGet();
+                        finishPartition(remaining, deliveryTimer, start);
+                    }
+                });
+            }
+        }
+    }
+    
+    private static void finishPartition(AtomicInteger remaining, Timer deliveryTimer, long start) {
+        if (remaining.decrementAndGet() == 0) {
+            deliveryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            sessionChannels.computeIfAbsent(sessionId,
+                    id -> new OrderedMessageChannelDecorator(clientOutboundChannel, orderedSendLog));
+        }
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessionChannels.remove(event.getSessionId());
+    }
+    
+    private void deliver(Set<Subscriber> partition, MessageHeaders headers, EncodedPayload payload) {
+        for (Subscriber subscriber : partition) {
+            MessageChannel channel = sessionChannels.get(subscriber.sessionId());
+            if (channel == null) {
+                // Disconnected while the broadcast was queued
+                continue;
+            }
+            try {
+                CompactSession compactSession = wireFormats.getCompactSession(subscriber.sessionId());
+                CompactForm compact = compactSession != null ? payload.compact() : null;
+                if (compact != null) {
+                    deliverCompact(channel, subscriber, compactSession, headers, payload, compact);
+                    continue;
+                }
+                SimpMessageHeaderAccessor accessor = createAccessor(subscriber, headers, payload);
+                channel.send(MessageBuilder.createMessage(payload.bytes(), accessor.getMessageHeaders()));
+            } catch (RuntimeException e) {
+                logger.error("Failed to deliver broadcast to session {}", subscriber.sessionId(), e);
+            }
+        }
+    }
+    
+    private void deliverCompact(MessageChannel channel, Subscriber subscriber, CompactSession session,
+                                MessageHeaders headers, EncodedPayload payload, CompactForm compact) {
+        SimpMessageHeaderAccessor accessor = createAccessor(subscriber, headers, payload);
+        accessor.setContentType(CompactMessageCodec.CONTENT_TYPE);
+        
+        // Held until the frame is queued on the session's ordered channel; see CompactSession
+        synchronized (session) {
+            Map<Long, String> definitions = session.intern(compact.users());
+            if (!definitions.isEmpty()) {
+                accessor.setNativeHeader(CompactMessageCodec.USER_NAMES_HEADER, compactCodec.encodeUserNames(definitions));
+            }
+            channel.send(MessageBuilder.createMessage(compact.bytes(), accessor.getMessageHeaders()));
+        }
+    }
+    
+    /**
+     * Builds one frame's headers. Native headers are set per frame, after the shared
+     * headers are copied, so no frame ever writes to a map that other frames share.
+     */
+    private static SimpMessageHeaderAccessor createAccessor(Subscriber subscriber, MessageHeaders headers,
+                                                            EncodedPayload payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(subscriber.sessionId());
+        accessor.setSubscriptionId(subscriber.subscriptionId());
+        accessor.copyHeadersIfAbsent(headers);
+        if (payload.batchSize() > 0) {
+            accessor.setNativeHeader(RoomCoalescer.BATCH_HEADER, Integer.toString(payload.batchSize()));
+        }
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+    
+    private double queuedTasks() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+}
@@ -0,0 +1,181 @@
+package com.chatapp.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks which sessions subscribe to which {@code /topic/room.{id}} destinations, fed by
+ * the STOMP session events. Each room's subscribers are pre-split into partitions by
+ * session, so a broadcast can hand every partition to its own worker without scanning
+ * the subscriber set first. A session always lands in the same partition.
+ */
+@Component
+public class RoomSubscriptionRegistry {
+    
+    public static final String ROOM_TOPIC_PREFIX = "/topic/room.";
+    
+    @Value("${chat.websocket.fanout.lanes:0}")
+    private int configuredPartitions;
+    
+    private final Map<Long, RoomSubscribers> rooms = new ConcurrentHashMap<>();
+    
+    // session ID -> (subscription ID -> room ID), to resolve unsubscribes and disconnects
+    private final Map<String, Map<String, Long>> sessions = new ConcurrentHashMap<>();
+    
+    public int getPartitionCount() {
+        return configuredPartitions > 0 ? configuredPartitions : Runtime.getRuntime().availableProcessors();
+    }
+    
+    public int partitionOf(String sessionId) {
+        return (sessionId.hashCode() & 0x7fffffff) % getPartitionCount();
+    }
+    
+    /**
+     * Returns the room's subscribers, or null if nobody is subscribed.
+     */
+    public RoomSubscribers get(Long roomId) {
+        return rooms.get(roomId);
+    }
+    
+    /**
+     * Returns the room's tier by its current number of subscribers on this node.
+     */
+    public RoomTier tierOf(Long roomId) {
+        RoomSubscribers subscribers = rooms.get(roomId);
+        return RoomTier.of(subscribers != null ? subscribers.size() : 0);
+    }
+    
+    /**
+     * Returns a live view of the rooms that have subscribers.
+     */
+    public Collection<RoomSubscribers> getRooms() {
+        return Collections.unmodifiableCollection(rooms.values());
+    }
+    
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Long roomId = parseRoomId(accessor.getDestination());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (roomId == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+        
+        sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, roomId);
+        Subscriber subscriber = new Subscriber(sessionId, subscriptionId);
+        rooms.compute(roomId, (id, room) -> {
+            RoomSubscribers subscribers = room != null ? room : new RoomSubscribers(getPartitionCount());
+            subscribers.add(partitionOf(sessionId), subscriber);
+            return subscribers;
+        });
+    }
+    
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        
+        Map<String, Long> subscriptions = sessions.get(sessionId);
+        Long roomId = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+        if (roomId != null) {
+            remove(roomId, new Subscriber(sessionId, subscriptionId));
+        }
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String sessionId = event.getSessionId();
+        Map<String, Long> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, roomId) -> remove(roomId, new Subscriber(sessionId, subscriptionId)));
+        }
+    }
+    
+    private void remove(Long roomId, Subscriber subscriber) {
+        rooms.computeIfPresent(roomId, (id, room) -> {
+            room.remove(partitionOf(subscriber.sessionId()), subscriber);
+            return room.size() == 0 ? null : room;
+        });
+    }
+    
+    static Long parseRoomId(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_TOPIC_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(destination.substring(ROOM_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    public record Subscriber(String sessionId, String subscriptionId) {
+    }
+    
+    /**
+     * A room's subscribers, split into partitions. Iteration is weakly consistent, so a
+     * broadcast may or may not reach a session that subscribes while it is in flight.
+     */
+    public static final class RoomSubscribers {
+        
+        private final Set<Subscriber>[] partitions;
+        
+        private final AtomicInteger size = new AtomicInteger();
+        
+        // Partitioned deliveries of this room that have not finished yet
+        private final AtomicInteger pendingDeliveries = new AtomicInteger();
+        
+        @SuppressWarnings("unchecked")
+        RoomSubscribers(int partitionCount) {
+            partitions = new Set[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = ConcurrentHashMap.newKeySet();
+            }
+        }
+        
+        void add(int partition, Subscriber subscriber) {
+            if (partitions[partition].add(subscriber)) {
+                size.incrementAndGet();
+            }
+        }
+        
+        void remove(int partition, Subscriber subscriber) {
+            if (partitions[partition].remove(subscriber)) {
+                size.decrementAndGet();
+            }
+        }
+        
+        public int size() {
+            return size.get();
+        }
+        
+        public int partitionCount() {
+            return partitions.length;
+        }
+        
+        public Set<Subscriber> partition(int index) {
+            return partitions[index];
+        }
+        
+        AtomicInteger pendingDeliveries() {
+            return pendingDeliveries;
+        }
+    }
+}
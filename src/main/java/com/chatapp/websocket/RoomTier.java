@@ -0,0 +1,40 @@
+package com.chatapp.websocket;
+
+import java.util.Locale;
+
+/**
+ * Size class of a room by its current number of subscribers on this node. Metrics are
+ * tagged with the tier rather than the room ID, so their cardinality stays fixed no
+ * matter how many rooms exist.
+ */
+public enum RoomTier {
+    
+    SMALL(10),
+    MEDIUM(100),
+    LARGE(1000),
+    HUGE(Integer.MAX_VALUE);
+    
+    private static final RoomTier[] TIERS = values();
+    
+    private final int maxSubscribers;
+    
+    private final String tag;
+    
+    RoomTier(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+        this.tag = name().toLowerCase(Locale.ROOT);
+    }
+    
+    public static RoomTier of(int subscribers) {
+        for (RoomTier tier : TIERS) {
+            if (subscribers < tier.maxSubscribers) {
+                return tier;
+            }
+        }
+        return HUGE;
+    }
+    
+    public String tag() {
+        return tag;
+    }
+}
@@ -0,0 +1,103 @@
+package com.chatapp.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Send-buffer metrics for WebSocket sessions. Buffered bytes are reported as a total and
+ * a maximum across live sessions rather than one gauge per session, and every send that
+ * finds its session busy records the session's backlog in a distribution summary.
+ */
+@Component
+public class SessionSendMetrics {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<String, SlowConsumerSessionDecorator> sessions = new ConcurrentHashMap<>();
+    
+    private DistributionSummary backlogBytes;
+    
+    private Counter droppedFrames;
+    
+    private Counter coalescedFrames;
+    
+    private Counter disconnectedSessions;
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.websocket.buffered.bytes", this, SessionSendMetrics::totalBufferedBytes)
+                .description("Bytes waiting in session send buffers")
+                .tag("aggregate", "total")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.buffered.bytes", this, SessionSendMetrics::maxBufferedBytes)
+                .description("Bytes waiting in session send buffers")
+                .tag("aggregate", "max")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        backlogBytes = DistributionSummary.builder("chat.websocket.session.backlog.bytes")
+                .description("Send buffer size of a session when a frame had to wait")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        droppedFrames = slowConsumerCounter("dropped");
+        coalescedFrames = slowConsumerCounter("coalesced");
+        disconnectedSessions = slowConsumerCounter("disconnected");
+    }
+    
+    private Counter slowConsumerCounter(String action) {
+        return Counter.builder("chat.websocket.slow.consumer")
+                .description("Frames dropped or coalesced and sessions disconnected for reading too slowly")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+    
+    void register(SlowConsumerSessionDecorator session) {
+        sessions.put(session.getId(), session);
+    }
+    
+    void unregister(String sessionId) {
+        sessions.remove(sessionId);
+    }
+    
+    void recordBacklog(int bufferedBytes) {
+        backlogBytes.record(bufferedBytes);
+    }
+    
+    void recordDropped(int frames) {
+        droppedFrames.increment(frames);
+    }
+    
+    void recordCoalesced(int frames) {
+        coalescedFrames.increment(frames);
+    }
+    
+    void recordDisconnected() {
+        disconnectedSessions.increment();
+    }
+    
+    private double totalBufferedBytes() {
+        long total = 0;
+        for (SlowConsumerSessionDecorator session : sessions.values()) {
+            total += session.getBufferSize();
+        }
+        return total;
+    }
+    
+    private double maxBufferedBytes() {
+        int max = 0;
+        for (SlowConsumerSessionDecorator session : sessions.values()) {
+            max = Math.max(max, session.getBufferSize());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,71 @@
+package com.chatapp.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records which sessions negotiated the compact encoding at CONNECT, and which
+ * usernames each of them has already been sent. Sessions that did not ask for it
+ * keep receiving JSON.
+ */
+@Component
+public class SessionWireFormats {
+    
+    private final Map<String, CompactSession> compactSessions = new ConcurrentHashMap<>();
+    
+    /**
+     * Returns the session's compact encoding state, or null if it uses JSON.
+     */
+    public CompactSession getCompactSession(String sessionId) {
+        return compactSessions.get(sessionId);
+    }
+    
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String encoding = accessor.getFirstNativeHeader(CompactMessageCodec.ENCODING_HEADER);
+        if (accessor.getSessionId() != null && CompactMessageCodec.COMPACT_ENCODING.equalsIgnoreCase(encoding)) {
+            compactSessions.put(accessor.getSessionId(), new CompactSession());
+        }
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        compactSessions.remove(event.getSessionId());
+    }
+    
+    /**
+     * Per-session intern table. Callers hold the instance's monitor from the lookup until
+     * the frame has been handed to the session's ordered channel, so a frame that relies
+     * on an earlier definition can never overtake it.
+     */
+    public static final class CompactSession {
+        
+        private final Set<Long> knownUsers = new HashSet<>();
+        
+        /**
+         * Returns the users this session has not been sent yet, and marks them as sent.
+         */
+        Map<Long, String> intern(Map<Long, String> users) {
+            Map<Long, String> unknown = null;
+            for (Map.Entry<Long, String> user : users.entrySet()) {
+                if (knownUsers.add(user.getKey())) {
+                    if (unknown == null) {
+                        unknown = new HashMap<>();
+                    }
+                    unknown.put(user.getKey(), user.getValue());
+                }
+            }
+            return unknown != null ? unknown : Map.of();
+        }
+    }
+}
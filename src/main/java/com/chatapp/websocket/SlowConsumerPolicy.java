@@ -0,0 +1,28 @@
+package com.chatapp.websocket;
+
+/**
+ * What to do with a session whose client reads more slowly than messages arrive, once
+ * its send buffer exceeds the configured limit. A send that blocks for longer than the
+ * send-time limit always disconnects the session.
+ */
+public enum SlowConsumerPolicy {
+    
+    /**
+     * Close the session; the client reconnects and reloads history.
+     */
+    DISCONNECT,
+    
+    /**
+     * Discard the oldest buffered room messages until the buffer is back under the limit;
+     * clients fetch them again by seq. Other frames, and room messages that define compact
+     * user IDs, are always kept.
+     */
+    DROP_OLDEST,
+    
+    /**
+     * Merge buffered frames into a single write while the client is behind, so it
+     * catches up with fewer, larger writes. A backlog that still exceeds the limit
+     * disconnects the session.
+     */
+    COALESCE
+}
@@ -0,0 +1,258 @@
+package com.chatapp.websocket;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe session decorator with a bounded send buffer: one thread writes at a time
+ * while other senders queue their frames and return. When the buffer outgrows its limit
+ * the configured {@link SlowConsumerPolicy} decides what happens to the session.
+ * <p>
+ * Extends {@link ConcurrentWebSocketSessionDecorator} because STOMP's ordered publishing
+ * requires that type, but replaces its buffering entirely; the superclass buffer is
+ * never used.
+ */
+public class SlowConsumerSessionDecorator extends ConcurrentWebSocketSessionDecorator {
+    
+    // Upper bound for one coalesced write, in characters
+    private static final int MAX_COALESCED_LENGTH = 64 * 1024;
+    
+    private static final String USER_NAMES_HEADER_LINE = "\n" + CompactMessageCodec.USER_NAMES_HEADER + ":";
+    
+    private static final String MESSAGE_COMMAND = "MESSAGE\n";
+    
+    private static final String DESTINATION_HEADER_LINE = "\ndestination:";
+    
+    private final int sendTimeLimit;
+    
+    private final int bufferSizeLimit;
+    
+    private final SlowConsumerPolicy policy;
+    
+    private final SessionSendMetrics metrics;
+    
+    private final Queue<WebSocketMessage<?>> buffer = new LinkedBlockingQueue<>();
+    
+    private final AtomicInteger bufferSize = new AtomicInteger();
+    
+    private final Lock flushLock = new ReentrantLock();
+    
+    private final Lock closeLock = new ReentrantLock();
+    
+    private volatile Consumer<WebSocketMessage<?>> messageCallback;
+    
+    private volatile long sendStartTime;
+    
+    private volatile boolean limitExceeded;
+    
+    private volatile boolean closeInProgress;
+    
+    public SlowConsumerSessionDecorator(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                                        SlowConsumerPolicy policy, SessionSendMetrics metrics) {
+        super(delegate, sendTimeLimit, bufferSizeLimit);
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+    
+    @Override
+    public int getBufferSize() {
+        return bufferSize.get();
+    }
+    
+    @Override
+    public long getTimeSinceSendStarted() {
+        long start = sendStartTime;
+        return start > 0 ? System.currentTimeMillis() - start : 0;
+    }
+    
+    @Override
+    public void setMessageCallback(Consumer<WebSocketMessage<?>> callback) {
+        messageCallback = callback;
+    }
+    
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (shouldNotSend()) {
+            return;
+        }
+        
+        buffer.add(message);
+        bufferSize.addAndGet(message.getPayloadLength());
+        
+        // Releases the next frame of an ordered publisher once this one is buffered
+        Consumer<WebSocketMessage<?>> callback = messageCallback;
+        if (callback != null) {
+            callback.accept(message);
+        }
+        
+        do {
+            if (!tryFlushMessageBuffer()) {
+                // Another thread is writing; this frame waits in the buffer
+                metrics.recordBacklog(getBufferSize());
+                checkSessionLimits();
+                break;
+            }
+        } while (!buffer.isEmpty() && !shouldNotSend());
+    }
+    
+    private boolean shouldNotSend() {
+        return limitExceeded || closeInProgress;
+    }
+    
+    private boolean tryFlushMessageBuffer() throws IOException {
+        if (!flushLock.tryLock()) {
+            return false;
+        }
+        try {
+            while (true) {
+                WebSocketMessage<?> message = buffer.poll();
+                if (message == null || shouldNotSend()) {
+                    break;
+                }
+                bufferSize.addAndGet(-message.getPayloadLength());
+                if (policy == SlowConsumerPolicy.COALESCE && message instanceof TextMessage text) {
+                    message = coalesce(text);
+                }
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(message);
+                sendStartTime = 0;
+            }
+        } finally {
+            sendStartTime = 0;
+            flushLock.unlock();
+        }
+        return true;
+    }
+    
+    /**
+     * Appends the text frames queued behind {@code first}. STOMP clients split a
+     * WebSocket message on frame terminators, so several frames may share one write.
+     * Only the flushing thread polls the buffer under this policy.
+     */
+    private TextMessage coalesce(TextMessage first) {
+        if (!(buffer.peek() instanceof TextMessage)) {
+            return first;
+        }
+        
+        StringBuilder payload = new StringBuilder(first.getPayload());
+        int merged = 0;
+        while (payload.length() < MAX_COALESCED_LENGTH && buffer.peek() instanceof TextMessage) {
+            TextMessage next = (TextMessage) buffer.poll();
+            bufferSize.addAndGet(-next.getPayloadLength());
+            payload.append(next.getPayload());
+            merged++;
+        }
+        metrics.recordCoalesced(merged);
+        return new TextMessage(payload);
+    }
+    
+    private void checkSessionLimits() {
+        if (shouldNotSend() || !closeLock.tryLock()) {
+            return;
+        }
+        try {
+            if (getTimeSinceSendStarted() > sendTimeLimit) {
+                limitExceeded(String.format("Send time %d (ms) for session '%s' exceeded the allowed limit %d",
+                        getTimeSinceSendStarted(), getId(), sendTimeLimit));
+            } else if (getBufferSize() > bufferSizeLimit) {
+                if (policy == SlowConsumerPolicy.DROP_OLDEST) {
+                    dropOldest();
+                } else {
+                    limitExceeded(String.format("Buffer size %d bytes for session '%s' exceeds the allowed limit %d",
+                            getBufferSize(), getId(), bufferSizeLimit));
+                }
+            }
+        } finally {
+            closeLock.unlock();
+        }
+    }
+    
+    /**
+     * Discards buffered room messages from the oldest on. Every other frame is kept:
+     * receipts, errors, user queue replies and presence deltas are not recovered by a
+     * resume, and frames that define compact user IDs are relied on by later frames.
+     */
+    private void dropOldest() {
+        int dropped = 0;
+        Iterator<WebSocketMessage<?>> oldestFirst = buffer.iterator();
+        while (getBufferSize() > bufferSizeLimit && oldestFirst.hasNext()) {
+            WebSocketMessage<?> message = oldestFirst.next();
+            // The flushing thread may have taken the frame in the meantime
+            if (isDroppable(message) && buffer.remove(message)) {
+                bufferSize.addAndGet(-message.getPayloadLength());
+                dropped++;
+            }
+        }
+        metrics.recordDropped(dropped);
+    }
+    
+    /**
+     * Whether the frame is a MESSAGE to a room topic that defines no users. Clients fetch
+     * dropped room messages again by seq.
+     */
+    private static boolean isDroppable(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage text)) {
+            return false;
+        }
+        String frame = text.getPayload();
+        int headersEnd = frame.indexOf("\n\n");
+        if (!frame.startsWith(MESSAGE_COMMAND) || headersEnd < 0) {
+            return false;
+        }
+        int userNames = frame.indexOf(USER_NAMES_HEADER_LINE);
+        if (userNames >= 0 && userNames < headersEnd) {
+            return false;
+        }
+        // The command's newline starts the first header line
+        int destination = frame.indexOf(DESTINATION_HEADER_LINE, MESSAGE_COMMAND.length() - 1);
+        if (destination < 0 || destination > headersEnd) {
+            return false;
+        }
+        int valueStart = destination + DESTINATION_HEADER_LINE.length();
+        return RoomSubscriptionRegistry.parseRoomId(frame.substring(valueStart, frame.indexOf('\n', valueStart))) != null;
+    }
+    
+    private void limitExceeded(String reason) {
+        limitExceeded = true;
+        metrics.recordDisconnected();
+        // SubProtocolWebSocketHandler closes the session when it sees this exception
+        throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+    
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        closeLock.lock();
+        try {
+            if (closeInProgress) {
+                return;
+            }
+            if (limitExceeded) {
+                status = CloseStatus.SESSION_NOT_RELIABLE;
+            }
+            closeInProgress = true;
+            super.close(status);
+        } finally {
+            closeLock.unlock();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return getDelegate().toString();
+    }
+}
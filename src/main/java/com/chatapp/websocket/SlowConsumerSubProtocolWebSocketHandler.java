@@ -0,0 +1,41 @@
+package com.chatapp.websocket;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * Sub-protocol handler that wraps sessions in a {@link SlowConsumerSessionDecorator}
+ * instead of the default decorator, so the slow-consumer policy applies to every
+ * STOMP session.
+ */
+public class SlowConsumerSubProtocolWebSocketHandler extends SubProtocolWebSocketHandler {
+    
+    private final SlowConsumerPolicy policy;
+    
+    private final SessionSendMetrics metrics;
+    
+    public SlowConsumerSubProtocolWebSocketHandler(MessageChannel clientInboundChannel,
+                                                   SubscribableChannel clientOutboundChannel,
+                                                   SlowConsumerPolicy policy, SessionSendMetrics metrics) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+    
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        SlowConsumerSessionDecorator decorated = new SlowConsumerSessionDecorator(
+                session, getSendTimeLimit(), getSendBufferSizeLimit(), policy, metrics);
+        metrics.register(decorated);
+        return decorated;
+    }
+    
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        metrics.unregister(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+    }
+}
@@ -0,0 +1,83 @@
+package com.chatapp.websocket;
+
+import com.chatapp.websocket.RoomSubscriptionRegistry.RoomSubscribers;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gauges for connected STOMP sessions and for room subscriptions. Subscriptions are
+ * reported per {@link RoomTier}, as the number of rooms in the tier and the subscribers
+ * they have in total, and are computed from {@link RoomSubscriptionRegistry} when read.
+ */
+@Component
+public class StompSessionMetrics {
+    
+    @Autowired
+    private RoomSubscriptionRegistry subscriptionRegistry;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.websocket.sessions", sessions, Set::size)
+                .description("Connected STOMP sessions")
+                .register(meterRegistry);
+        for (RoomTier tier : RoomTier.values()) {
+            Gauge.builder("chat.websocket.rooms", () -> countRooms(tier))
+                    .description("Rooms with subscribers on this node")
+                    .tag("tier", tier.tag())
+                    .register(meterRegistry);
+            Gauge.builder("chat.websocket.subscriptions", () -> countSubscribers(tier))
+                    .description("Room topic subscriptions on this node")
+                    .tag("tier", tier.tag())
+                    .register(meterRegistry);
+        }
+    }
+    
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            sessions.add(sessionId);
+        }
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+    
+    private int countRooms(RoomTier tier) {
+        int rooms = 0;
+        for (RoomSubscribers subscribers : subscriptionRegistry.getRooms()) {
+            if (RoomTier.of(subscribers.size()) == tier) {
+                rooms++;
+            }
+        }
+        return rooms;
+    }
+    
+    private long countSubscribers(RoomTier tier) {
+        long total = 0;
+        for (RoomSubscribers subscribers : subscriptionRegistry.getRooms()) {
+            int size = subscribers.size();
+            if (RoomTier.of(size) == tier) {
+                total += size;
+            }
+        }
+        return total;
+    }
+}
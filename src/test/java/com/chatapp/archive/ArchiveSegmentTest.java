@@ -0,0 +1,148 @@
+package com.chatapp.archive;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.entity.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveSegmentTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void writtenSegmentOpensWithTheSameIndexAndMessages() throws IOException {
+        List<MessageDto> messages = messages(1, 10);
+        messages.get(3).setSeq(null);
+        messages.get(4).setEdited(true);
+        messages.get(4).setEditedAt(LocalDateTime.of(2024, 5, 2, 8, 30, 15, 500));
+        messages.get(5).setMessageType(Message.MessageType.SYSTEM);
+        messages.get(6).setContent("ünïcödé ✓");
+        
+        ArchiveSegment written = ArchiveSegment.write(dir, messages, 4);
+        ArchiveSegment opened = ArchiveSegment.open(dir.resolve(ArchiveSegment.fileName(1)));
+        
+        for (ArchiveSegment segment : List.of(written, opened)) {
+            assertThat(segment.getBlockCount()).isEqualTo(3);
+            assertThat(segment.getCount(0)).isEqualTo(4);
+            assertThat(segment.getCount(2)).isEqualTo(2);
+            assertThat(segment.getMessageCount()).isEqualTo(10);
+            assertThat(segment.getFirstId()).isEqualTo(1);
+            assertThat(segment.getFirstId(1)).isEqualTo(5);
+            assertThat(segment.getLastId()).isEqualTo(10);
+            assertThat(segment.getLastSeq(2)).isEqualTo(10);
+            assertThat(segment.getMaxSeq()).isEqualTo(10);
+        }
+        
+        List<MessageDto> read = new ArrayList<>();
+        for (int block = 0; block < opened.getBlockCount(); block++) {
+            read.addAll(opened.readBlock(block));
+        }
+        assertThat(read).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(messages);
+        try (Stream<Path> files = Files.list(dir)) {
+            // The temporary file was moved into place
+            assertThat(files).containsExactly(dir.resolve(ArchiveSegment.fileName(1)));
+        }
+    }
+    
+    @Test
+    void blockWithoutSequencedMessagesHasNoSeqRange() throws IOException {
+        List<MessageDto> messages = messages(1, 4);
+        messages.get(2).setSeq(null);
+        messages.get(3).setSeq(null);
+        
+        ArchiveSegment segment = ArchiveSegment.write(dir, messages, 2);
+        
+        assertThat(segment.getLastSeq(0)).isEqualTo(2);
+        assertThat(segment.getLastSeq(1)).isEqualTo(-1);
+        assertThat(segment.getMaxSeq()).isEqualTo(2);
+    }
+    
+    @Test
+    void openRejectsAFileWithoutTheMagicNumber() throws IOException {
+        Path path = write(messages(1, 5));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), channel.size() - 4);
+        }
+        
+        assertThatThrownBy(() -> ArchiveSegment.open(path)).isInstanceOf(IOException.class);
+    }
+    
+    @Test
+    void openRejectsATruncatedFile() throws IOException {
+        Path path = write(messages(1, 5));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 7);
+        }
+        
+        assertThatThrownBy(() -> ArchiveSegment.open(path)).isInstanceOf(IOException.class);
+    }
+    
+    @Test
+    void openRejectsAFileShorterThanTheFooter() throws IOException {
+        Path path = dir.resolve(ArchiveSegment.fileName(1));
+        Files.write(path, new byte[] {1, 2, 3});
+        
+        assertThatThrownBy(() -> ArchiveSegment.open(path)).isInstanceOf(IOException.class);
+    }
+    
+    @Test
+    void openRejectsAnIndexPositionOutsideTheFile() throws IOException {
+        Path path = write(messages(1, 5));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, channel.size()), channel.size() - 12);
+        }
+        
+        assertThatThrownBy(() -> ArchiveSegment.open(path)).isInstanceOf(IOException.class);
+    }
+    
+    @Test
+    void openRejectsAnIndexThatDoesNotMatchItsBlockCount() throws IOException {
+        Path path = write(messages(1, 5));
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer footer = ByteBuffer.allocate(8);
+            channel.read(footer, size - 12);
+            long indexPosition = footer.getLong(0);
+            channel.write(ByteBuffer.allocate(4).putInt(0, 2), indexPosition);
+        }
+        
+        assertThatThrownBy(() -> ArchiveSegment.open(path)).isInstanceOf(IOException.class);
+    }
+    
+    private Path write(List<MessageDto> messages) throws IOException {
+        ArchiveSegment.write(dir, messages, 2);
+        return dir.resolve(ArchiveSegment.fileName(messages.get(0).getId()));
+    }
+    
+    /**
+     * Messages with IDs and seqs {@code from} to {@code to}, inclusive.
+     */
+    static List<MessageDto> messages(long from, long to) {
+        return new ArrayList<>(LongStream.rangeClosed(from, to).mapToObj(id -> {
+            MessageDto message = new MessageDto("message " + id, 7L);
+            message.setId(id);
+            message.setUserId(3L);
+            message.setUsername("alice");
+            message.setSeq(id);
+            message.setMessageType(Message.MessageType.TEXT);
+            message.setCreatedAt(LocalDateTime.of(2024, 5, 1, 12, 0).plusSeconds(id));
+            return message;
+        }).toList());
+    }
+}
@@ -0,0 +1,135 @@
+package com.chatapp.archive;
+
+import com.chatapp.dto.MessageDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static com.chatapp.archive.ArchiveSegmentTest.messages;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageArchiveTest {
+    
+    private static final Long ROOM = 7L;
+    
+    @TempDir
+    Path dir;
+    
+    private MessageArchive archive;
+    
+    /**
+     * Room 7 holds messages 1 to 25 in three segments with blocks of three:
+     * [1-3 4-6 7-9 10] [11-13 14-16 17-19 20] [21-23 24-25].
+     */
+    @BeforeEach
+    void archiveThreeSegments() throws IOException {
+        archive = open();
+        archive.append(ROOM, messages(1, 10));
+        archive.append(ROOM, messages(11, 20));
+        archive.append(ROOM, messages(21, 25));
+    }
+    
+    @Test
+    void getLatestSkipsWithinTheNewestSegment() {
+        assertThat(ids(archive.getLatest(ROOM, 0, 5))).containsExactly(25L, 24L, 23L, 22L, 21L);
+        assertThat(ids(archive.getLatest(ROOM, 1, 3))).containsExactly(24L, 23L, 22L);
+        assertThat(ids(archive.getLatest(ROOM, 2, 2))).containsExactly(23L, 22L);
+    }
+    
+    @Test
+    void getLatestSkipsWholeSegmentsAndBlocks() {
+        // Exactly the newest segment
+        assertThat(ids(archive.getLatest(ROOM, 5, 4))).containsExactly(20L, 19L, 18L, 17L);
+        // The newest segment, the single-message block [20] and one message of [17-19]
+        assertThat(ids(archive.getLatest(ROOM, 7, 3))).containsExactly(18L, 17L, 16L);
+        // Two whole segments and all but one message of the oldest block
+        assertThat(ids(archive.getLatest(ROOM, 24, 10))).containsExactly(1L);
+    }
+    
+    @Test
+    void getLatestReadsAcrossSegmentsUpToTheLimit() {
+        assertThat(ids(archive.getLatest(ROOM, 3, 10))).containsExactly(22L, 21L, 20L, 19L, 18L, 17L, 16L, 15L, 14L, 13L);
+        assertThat(ids(archive.getLatest(ROOM, 0, 100))).containsExactlyElementsOf(range(25, 1));
+    }
+    
+    @Test
+    void getLatestPastTheEndIsEmpty() {
+        assertThat(archive.getLatest(ROOM, 25, 10)).isEmpty();
+        assertThat(archive.getLatest(ROOM, Long.MAX_VALUE, 10)).isEmpty();
+        assertThat(archive.getLatest(8L, 0, 10)).isEmpty();
+    }
+    
+    @Test
+    void getBeforeContinuesFromTheCursor() {
+        assertThat(ids(archive.getBefore(ROOM, null, 4))).containsExactly(25L, 24L, 23L, 22L);
+        assertThat(ids(archive.getBefore(ROOM, 22L, 4))).containsExactly(21L, 20L, 19L, 18L);
+        assertThat(ids(archive.getBefore(ROOM, 12L, 5))).containsExactly(11L, 10L, 9L, 8L, 7L);
+        assertThat(ids(archive.getBefore(ROOM, 3L, 5))).containsExactly(2L, 1L);
+        assertThat(archive.getBefore(ROOM, 1L, 5)).isEmpty();
+    }
+    
+    @Test
+    void getBeforeACursorAboveTheArchiveStartsFromTheNewest() {
+        assertThat(ids(archive.getBefore(ROOM, 1000L, 2))).containsExactly(25L, 24L);
+    }
+    
+    @Test
+    void getAfterSeqReturnsOldestFirst() {
+        assertThat(ids(archive.getAfterSeq(ROOM, 18, 4))).containsExactly(19L, 20L, 21L, 22L);
+        assertThat(ids(archive.getAfterSeq(ROOM, 0, 3))).containsExactly(1L, 2L, 3L);
+        assertThat(archive.getAfterSeq(ROOM, 25, 10)).isEmpty();
+    }
+    
+    @Test
+    void tracksTheLastArchivedIdAndMaxSeq() {
+        assertThat(archive.getLastArchivedId(ROOM)).isEqualTo(25);
+        assertThat(archive.getMaxSeq(ROOM)).isEqualTo(25);
+        assertThat(archive.getLastArchivedId(8L)).isZero();
+        assertThat(archive.getMaxSeq(8L)).isEqualTo(-1);
+    }
+    
+    @Test
+    void loadReopensTheSegmentsAndRemovesInterruptedWrites() throws IOException {
+        Path leftover = dir.resolve(ROOM.toString()).resolve(ArchiveSegment.fileName(26) + ".tmp");
+        Files.write(leftover, new byte[] {1, 2, 3});
+        
+        MessageArchive reopened = open();
+        
+        assertThat(leftover).doesNotExist();
+        assertThat(reopened.getLastArchivedId(ROOM)).isEqualTo(25);
+        assertThat(ids(reopened.getLatest(ROOM, 7, 3))).containsExactly(18L, 17L, 16L);
+        assertThat(ids(reopened.getBefore(ROOM, 12L, 2))).containsExactly(11L, 10L);
+    }
+    
+    @Test
+    void loadFailsOnACorruptSegment() throws IOException {
+        Path segment = dir.resolve(ROOM.toString()).resolve(ArchiveSegment.fileName(21));
+        Files.write(segment, new byte[] {0, 0, 0, 0});
+        
+        assertThatThrownBy(this::open).isInstanceOf(IOException.class);
+    }
+    
+    private MessageArchive open() throws IOException {
+        MessageArchive opened = new MessageArchive();
+        ReflectionTestUtils.setField(opened, "dir", dir.toString());
+        ReflectionTestUtils.setField(opened, "blockSize", 3);
+        opened.load();
+        return opened;
+    }
+    
+    private static List<Long> ids(List<MessageDto> messages) {
+        return messages.stream().map(MessageDto::getId).toList();
+    }
+    
+    private static List<Long> range(long from, long downTo) {
+        return LongStream.iterate(from, id -> id >= downTo, id -> id - 1).boxed().toList();
+    }
+}
@@ -0,0 +1,145 @@
+package com.chatapp.commitlog;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.entity.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitLogSegmentTest {
+    
+    private static final int SEGMENT_SIZE = 4096;
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void recoverFindsAllRecordsOfACleanSegment() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, SEGMENT_SIZE);
+        int first = append(segment, message(1, "first"));
+        int second = append(segment, message(2, "second"));
+        int end = segment.getWritePosition();
+        segment.close();
+        
+        CommitLogSegment reopened = CommitLogSegment.open(dir.resolve(fileName(0)));
+        assertThat(reopened.recover()).isEqualTo(2);
+        assertThat(reopened.getWritePosition()).isEqualTo(end);
+        assertThat(reopened.read(first).getContent()).isEqualTo("first");
+        assertThat(reopened.read(second).getContent()).isEqualTo("second");
+        assertThat(reopened.recordLength(end)).isZero();
+        reopened.close();
+    }
+    
+    @Test
+    void recoverCutsOffARecordWithABadChecksumAndZeroesTheRest() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, SEGMENT_SIZE);
+        append(segment, message(1, "kept"));
+        int torn = append(segment, message(2, "torn"));
+        append(segment, message(3, "after the torn record"));
+        segment.close();
+        
+        // Flip a payload byte of the second record, as a write torn by a crash would leave it
+        Path path = dir.resolve(fileName(0));
+        int payloadByte = torn + CommitLogSegment.HEADER_SIZE + 10;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, payloadByte);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~one.get(0)}), payloadByte);
+        }
+        
+        CommitLogSegment reopened = CommitLogSegment.open(path);
+        assertThat(reopened.recover()).isEqualTo(1);
+        assertThat(reopened.getWritePosition()).isEqualTo(torn);
+        assertThat(reopened.recordLength(torn)).isZero();
+        byte[] bytes = Files.readAllBytes(path);
+        for (int i = torn; i < bytes.length; i++) {
+            assertThat(bytes[i]).as("byte %d", i).isZero();
+        }
+        
+        // The next append reuses the space of the torn record
+        assertThat(append(reopened, message(4, "replacement"))).isEqualTo(torn);
+        reopened.close();
+        CommitLogSegment again = CommitLogSegment.open(path);
+        assertThat(again.recover()).isEqualTo(2);
+        assertThat(again.read(torn).getContent()).isEqualTo("replacement");
+        again.close();
+    }
+    
+    @Test
+    void recoverIgnoresALengthRunningPastTheEndOfTheSegment() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, SEGMENT_SIZE);
+        append(segment, message(1, "kept"));
+        int end = segment.getWritePosition();
+        segment.close();
+        
+        Path path = dir.resolve(fileName(0));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, SEGMENT_SIZE), end);
+        }
+        
+        CommitLogSegment reopened = CommitLogSegment.open(path);
+        assertThat(reopened.recover()).isEqualTo(1);
+        assertThat(reopened.getWritePosition()).isEqualTo(end);
+        assertThat(reopened.recordLength(end)).isZero();
+        reopened.close();
+    }
+    
+    @Test
+    void appendRefusesARecordThatDoesNotFit() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, 128);
+        byte[] payload = MessageRecord.encode(message(1, "x".repeat(40)));
+        
+        assertThat(segment.append(payload, CommitLogSegment.crc(payload))).isZero();
+        assertThat(segment.append(payload, CommitLogSegment.crc(payload))).isEqualTo(-1);
+        assertThat(segment.getWritePosition()).isEqualTo(CommitLogSegment.HEADER_SIZE + payload.length);
+        segment.close();
+    }
+    
+    @Test
+    void recordsRoundTripThroughTheBinaryLayout() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, SEGMENT_SIZE);
+        MessageDto original = message(42, "héllo wörld");
+        original.setUsername("ünicode");
+        original.setMessageType(Message.MessageType.SYSTEM);
+        
+        MessageDto read = segment.read(append(segment, original));
+        assertThat(read.getId()).isEqualTo(42L);
+        assertThat(read.getRoomId()).isEqualTo(original.getRoomId());
+        assertThat(read.getUserId()).isEqualTo(original.getUserId());
+        assertThat(read.getSeq()).isEqualTo(original.getSeq());
+        assertThat(read.getCreatedAt()).isEqualTo(original.getCreatedAt());
+        assertThat(read.getMessageType()).isEqualTo(Message.MessageType.SYSTEM);
+        assertThat(read.getUsername()).isEqualTo("ünicode");
+        assertThat(read.getContent()).isEqualTo("héllo wörld");
+        segment.close();
+    }
+    
+    static MessageDto message(long id, String content) {
+        MessageDto message = new MessageDto(content, 7L);
+        message.setId(id);
+        message.setUserId(3L);
+        message.setUsername("alice");
+        message.setSeq(id);
+        message.setMessageType(Message.MessageType.TEXT);
+        message.setCreatedAt(LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_000_000).plusSeconds(id));
+        return message;
+    }
+    
+    static String fileName(long baseOffset) {
+        return String.format("%020d%s", baseOffset, CommitLogSegment.SUFFIX);
+    }
+    
+    private static int append(CommitLogSegment segment, MessageDto message) {
+        byte[] payload = MessageRecord.encode(message);
+        return segment.append(payload, CommitLogSegment.crc(payload));
+    }
+}
@@ -0,0 +1,193 @@
+package com.chatapp.commitlog;
+
+import com.chatapp.dto.MessageDto;
+import com.chatapp.service.MessageBatchWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static com.chatapp.commitlog.CommitLogSegmentTest.fileName;
+import static com.chatapp.commitlog.CommitLogSegmentTest.message;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class MessageCommitLogTest {
+    
+    private static final int SEGMENT_SIZE = 4096;
+    
+    private static final String CHECKPOINT_FILE = "projected.checkpoint";
+    
+    @TempDir
+    Path dir;
+    
+    private final List<Long> insertedIds = new CopyOnWriteArrayList<>();
+    
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    
+    private MessageCommitLog commitLog;
+    
+    @AfterEach
+    void shutdown() {
+        if (commitLog != null) {
+            databaseDown.set(false);
+            commitLog.shutdown();
+        }
+    }
+    
+    @Test
+    void startReplaysOnlyRecordsAfterTheCheckpoint() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, SEGMENT_SIZE);
+        append(segment, message(1, "projected before the crash"));
+        int checkpoint = append(segment, message(2, "lost"));
+        append(segment, message(3, "also lost"));
+        int end = segment.getWritePosition();
+        segment.close();
+        Files.writeString(dir.resolve(CHECKPOINT_FILE), Integer.toString(checkpoint));
+        
+        commitLog = start(SEGMENT_SIZE, 100);
+        
+        assertThat(insertedIds).containsExactly(2L, 3L);
+        assertThat(Files.readString(dir.resolve(CHECKPOINT_FILE))).isEqualTo(Integer.toString(end));
+        assertThat(commitLog.getUnprojected(7L)).isEmpty();
+    }
+    
+    @Test
+    void startDropsATornTailAndAppendsAfterTheLastValidRecord() throws IOException {
+        CommitLogSegment segment = CommitLogSegment.create(dir, 0, SEGMENT_SIZE);
+        append(segment, message(1, "one"));
+        append(segment, message(2, "two"));
+        int torn = append(segment, message(3, "torn"));
+        segment.close();
+        try (FileChannel channel = FileChannel.open(dir.resolve(fileName(0)), StandardOpenOption.WRITE)) {
+            // Leave the length in place but break the checksum
+            channel.write(ByteBuffer.allocate(4).putInt(0, 0xDEADBEEF), torn + 4);
+        }
+        
+        commitLog = start(SEGMENT_SIZE, 100);
+        assertThat(insertedIds).containsExactly(1L, 2L);
+        
+        commitLog.append(message(4, "after restart"));
+        await(() -> insertedIds.size() == 3);
+        assertThat(insertedIds).containsExactly(1L, 2L, 4L);
+        assertThat(Files.readString(dir.resolve(CHECKPOINT_FILE)))
+                .isEqualTo(Long.toString(torn + CommitLogSegment.HEADER_SIZE
+                        + MessageRecord.encode(message(4, "after restart")).length));
+    }
+    
+    @Test
+    void projectsAcrossRolledSegmentsAndDeletesTheProjectedOnes() throws IOException {
+        // A few records per segment, so ten messages roll the log several times
+        int segmentSize = 3 * (CommitLogSegment.HEADER_SIZE + MessageRecord.encode(message(10, "message 10")).length);
+        commitLog = start(segmentSize, 2);
+        
+        for (long id = 1; id <= 10; id++) {
+            commitLog.append(message(id, "message " + id));
+        }
+        
+        await(() -> insertedIds.size() == 10);
+        assertThat(insertedIds).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        await(() -> segmentFiles().size() == 1);
+        assertThat(segmentFiles()).containsExactly(fileName(3L * segmentSize));
+        assertThat(commitLog.getUnprojected(7L)).isEmpty();
+    }
+    
+    @Test
+    void keepsMessagesReadableAndRetriesWhileTheDatabaseIsDown() throws IOException {
+        commitLog = start(SEGMENT_SIZE, 100);
+        databaseDown.set(true);
+        
+        commitLog.append(message(1, "one"));
+        commitLog.append(message(2, "two"));
+        assertThat(commitLog.getUnprojected(7L)).extracting(MessageDto::getContent).containsExactly("one", "two");
+        assertThat(commitLog.getUnprojected(8L)).isEmpty();
+        
+        databaseDown.set(false);
+        await(() -> commitLog.getUnprojected(7L).isEmpty());
+        assertThat(insertedIds).containsExactly(1L, 2L);
+    }
+    
+    @Test
+    void restartAfterACleanShutdownReplaysNothing() throws IOException {
+        commitLog = start(SEGMENT_SIZE, 100);
+        commitLog.append(message(1, "one"));
+        await(() -> insertedIds.size() == 1);
+        commitLog.shutdown();
+        
+        insertedIds.clear();
+        commitLog = start(SEGMENT_SIZE, 100);
+        assertThat(insertedIds).isEmpty();
+        commitLog.append(message(2, "two"));
+        await(() -> insertedIds.size() == 1);
+        assertThat(insertedIds).containsExactly(2L);
+    }
+    
+    private MessageCommitLog start(int segmentSize, int batchSize) throws IOException {
+        MessageBatchWriter batchWriter = mock(MessageBatchWriter.class);
+        doAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            List<MessageDto> batch = invocation.getArgument(0);
+            batch.forEach(message -> insertedIds.add(message.getId()));
+            return null;
+        }).when(batchWriter).insert(anyList());
+        
+        MessageCommitLog log = new MessageCommitLog();
+        ReflectionTestUtils.setField(log, "dir", dir.toString());
+        ReflectionTestUtils.setField(log, "segmentSizeBytes", segmentSize);
+        ReflectionTestUtils.setField(log, "syncIntervalMs", 0L);
+        ReflectionTestUtils.setField(log, "batchSize", batchSize);
+        ReflectionTestUtils.setField(log, "projectionIntervalMs", 10L);
+        ReflectionTestUtils.setField(log, "shutdownTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(log, "batchWriter", batchWriter);
+        ReflectionTestUtils.setField(log, "meterRegistry", new SimpleMeterRegistry());
+        log.start();
+        return log;
+    }
+    
+    private List<String> segmentFiles() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(CommitLogSegment.SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static int append(CommitLogSegment segment, MessageDto message) {
+        byte[] payload = MessageRecord.encode(message);
+        return segment.append(payload, CommitLogSegment.crc(payload));
+    }
+    
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.chatapp.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+    
+    // Ten permits per second, so one every 100 ms
+    private static final double RATE = 10;
+    
+    private static final long INTERVAL = ms(100);
+    
+    // An arbitrary nanoTime origin; only differences matter
+    private static final long START = 123_456_789_000L;
+    
+    @Test
+    void allowsTheBurstAtOnceThenRejects() {
+        RateLimiter limiter = new RateLimiter(RATE, 3, START);
+        
+        assertThat(limiter.tryAcquire(START)).isZero();
+        assertThat(limiter.tryAcquire(START)).isZero();
+        assertThat(limiter.tryAcquire(START)).isZero();
+        assertThat(limiter.tryAcquire(START)).isEqualTo(INTERVAL);
+    }
+    
+    @Test
+    void refillsOnePermitPerInterval() {
+        RateLimiter limiter = exhausted(3, START);
+        
+        assertThat(limiter.tryAcquire(START + ms(99))).isEqualTo(ms(1));
+        assertThat(limiter.tryAcquire(START + ms(100))).isZero();
+        assertThat(limiter.tryAcquire(START + ms(100))).isEqualTo(INTERVAL);
+        
+        // Two intervals later two permits are back, but no more than that
+        assertThat(limiter.tryAcquire(START + ms(300))).isZero();
+        assertThat(limiter.tryAcquire(START + ms(300))).isZero();
+        assertThat(limiter.tryAcquire(START + ms(300))).isEqualTo(INTERVAL);
+    }
+    
+    @Test
+    void rejectionDoesNotUseUpAPermit() {
+        RateLimiter limiter = exhausted(3, START);
+        
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire(START + ms(40))).isEqualTo(ms(60));
+        }
+        assertThat(limiter.tryAcquire(START + ms(100))).isZero();
+    }
+    
+    @Test
+    void refillStopsAtTheBurst() {
+        RateLimiter limiter = new RateLimiter(RATE, 3, START);
+        long later = START + TimeUnit.HOURS.toNanos(1);
+        
+        assertThat(limiter.tryAcquire(later)).isZero();
+        assertThat(limiter.tryAcquire(later)).isZero();
+        assertThat(limiter.tryAcquire(later)).isZero();
+        assertThat(limiter.tryAcquire(later)).isEqualTo(INTERVAL);
+    }
+    
+    @Test
+    void burstBelowOneAllowsOnePermit() {
+        RateLimiter limiter = new RateLimiter(RATE, 0, START);
+        
+        assertThat(limiter.tryAcquire(START)).isZero();
+        assertThat(limiter.tryAcquire(START)).isEqualTo(INTERVAL);
+    }
+    
+    @Test
+    void isIdleOnceTheWholeBurstIsBack() {
+        RateLimiter limiter = new RateLimiter(RATE, 3, START);
+        assertThat(limiter.isIdle(START)).isTrue();
+        
+        limiter.tryAcquire(START);
+        assertThat(limiter.isIdle(START + ms(99))).isFalse();
+        assertThat(limiter.isIdle(START + ms(100))).isTrue();
+        
+        exhaust(limiter, START + ms(100));
+        assertThat(limiter.isIdle(START + ms(399))).isFalse();
+        assertThat(limiter.isIdle(START + ms(400))).isTrue();
+    }
+    
+    @Test
+    void worksAcrossNanoTimeOverflow() {
+        long start = Long.MAX_VALUE - ms(150);
+        RateLimiter limiter = exhausted(3, start);
+        
+        assertThat(limiter.tryAcquire(start + ms(50))).isEqualTo(ms(50));
+        assertThat(limiter.tryAcquire(start + ms(100))).isZero();
+        assertThat(limiter.isIdle(start + ms(300))).isFalse();
+        assertThat(limiter.isIdle(start + ms(400))).isTrue();
+    }
+    
+    private static RateLimiter exhausted(int burst, long now) {
+        RateLimiter limiter = new RateLimiter(RATE, burst, now);
+        exhaust(limiter, now);
+        return limiter;
+    }
+    
+    private static void exhaust(RateLimiter limiter, long now) {
+        while (limiter.tryAcquire(now) == 0) {
+            // Take every permit available at this instant
+        }
+    }
+    
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,99 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class MessageWriteBehindQueueTest {
+    
+    private final List<Long> insertedIds = new CopyOnWriteArrayList<>();
+    
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    
+    private MessageWriteBehindQueue queue;
+    
+    @AfterEach
+    void shutdown() {
+        databaseDown.set(false);
+        queue.shutdown();
+    }
+    
+    @Test
+    void holdsTheBatchWhileTheDatabaseIsDown() throws InterruptedException {
+        queue = start(100);
+        databaseDown.set(true);
+        
+        queue.enqueue(message(1));
+        queue.enqueue(message(2));
+        Thread.sleep(300);
+        assertThat(insertedIds).isEmpty();
+        assertThat(queue.getUnflushed(7L)).extracting(MessageDto::getId).containsExactlyInAnyOrder(1L, 2L);
+        
+        databaseDown.set(false);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (insertedIds.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(insertedIds).containsExactly(1L, 2L);
+        assertThat(queue.getUnflushed(7L)).isEmpty();
+    }
+    
+    @Test
+    void pushesBackOnSendersOnceTheQueueIsFull() throws InterruptedException {
+        queue = start(2);
+        databaseDown.set(true);
+        
+        // The first message is taken by the flusher and held; two more fill the queue
+        queue.enqueue(message(1));
+        Thread.sleep(200);
+        queue.enqueue(message(2));
+        queue.enqueue(message(3));
+        
+        assertThatThrownBy(() -> queue.enqueue(message(4))).hasMessageContaining("Server is busy");
+        assertThat(queue.getUnflushed(7L)).hasSize(3);
+    }
+    
+    private MessageWriteBehindQueue start(int capacity) {
+        MessageBatchWriter batchWriter = mock(MessageBatchWriter.class);
+        doAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            List<MessageDto> batch = invocation.getArgument(0);
+            batch.forEach(message -> insertedIds.add(message.getId()));
+            return null;
+        }).when(batchWriter).insert(anyList());
+        
+        MessageWriteBehindQueue writeBehind = new MessageWriteBehindQueue();
+        ReflectionTestUtils.setField(writeBehind, "batchWriter", batchWriter);
+        ReflectionTestUtils.setField(writeBehind, "queueCapacity", capacity);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 200);
+        ReflectionTestUtils.setField(writeBehind, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(writeBehind, "offerTimeoutMs", 50L);
+        ReflectionTestUtils.setField(writeBehind, "shutdownTimeoutMs", 5000L);
+        writeBehind.start();
+        return writeBehind;
+    }
+    
+    private static MessageDto message(long id) {
+        MessageDto message = new MessageDto("message " + id, 7L);
+        message.setId(id);
+        message.setUserId(3L);
+        message.setSeq(id);
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+}
@@ -0,0 +1,118 @@
+package com.chatapp.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SlowConsumerSessionDecoratorTest {
+    
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    
+    private final CountDownLatch writing = new CountDownLatch(1);
+    
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    private Thread writer;
+    
+    @Test
+    void dropOldestKeepsFramesThatDefineUsers() throws Exception {
+        SlowConsumerSessionDecorator session = blockedSession(300);
+        
+        session.sendMessage(new TextMessage(frame("m2", true)));
+        for (int i = 3; i <= 10; i++) {
+            session.sendMessage(new TextMessage(frame("m" + i, false)));
+        }
+        
+        assertThat(drain()).extracting(SlowConsumerSessionDecoratorTest::body)
+                .startsWith("m1", "m2")
+                .endsWith("m10")
+                .doesNotContain("m3");
+        assertThat(sent.get(1)).contains("\n" + CompactMessageCodec.USER_NAMES_HEADER + ":");
+    }
+    
+    @Test
+    void dropOldestOnlyDropsRoomMessages() throws Exception {
+        // Room for the four kept frames and a few room messages
+        SlowConsumerSessionDecorator session = blockedSession(700);
+        
+        session.sendMessage(new TextMessage(frame("RECEIPT", "receipt-id:7", "r1")));
+        session.sendMessage(new TextMessage(frame("ERROR", "message:Invalid frame", "e1")));
+        session.sendMessage(new TextMessage(frame("MESSAGE", "destination:/user/queue/errors", "q1")));
+        session.sendMessage(new TextMessage(frame("MESSAGE", "destination:/topic/room.7.presence", "p1")));
+        for (int i = 2; i <= 10; i++) {
+            session.sendMessage(new TextMessage(frame("m" + i, false)));
+        }
+        
+        assertThat(drain()).extracting(SlowConsumerSessionDecoratorTest::body)
+                .startsWith("m1", "r1", "e1", "q1", "p1")
+                .endsWith("m10")
+                .doesNotContain("m2");
+    }
+    
+    /**
+     * A session whose first frame, m1, blocks in the write, so everything sent after it
+     * is buffered until {@link #drain}.
+     */
+    private SlowConsumerSessionDecorator blockedSession(int bufferSizeLimit) throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            sent.add((String) message.getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+        
+        SessionSendMetrics metrics = new SessionSendMetrics();
+        ReflectionTestUtils.setField(metrics, "meterRegistry", new SimpleMeterRegistry());
+        metrics.init();
+        SlowConsumerSessionDecorator session = new SlowConsumerSessionDecorator(
+                delegate, 60_000, bufferSizeLimit, SlowConsumerPolicy.DROP_OLDEST, metrics);
+        
+        writer = new Thread(() -> send(session, frame("m1", false)));
+        writer.start();
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+        return session;
+    }
+    
+    private List<String> drain() throws InterruptedException {
+        release.countDown();
+        writer.join(10_000);
+        return sent;
+    }
+    
+    private static String frame(String body, boolean definesUsers) {
+        String users = definesUsers ? "\n" + CompactMessageCodec.USER_NAMES_HEADER + ":{\"3\":\"alice\"}" : "";
+        return frame("MESSAGE", "destination:/topic/room.7" + users, body);
+    }
+    
+    private static String frame(String command, String headers, String body) {
+        return command + "\n" + headers + "\ncontent-type:application/json\n\n" + body + " " + "x".repeat(50) + "\0";
+    }
+    
+    private static String body(String frame) {
+        String body = frame.substring(frame.indexOf("\n\n") + 2);
+        return body.substring(0, body.indexOf(' '));
+    }
+    
+    private static void send(WebSocketSession session, String frame) {
+        try {
+            session.sendMessage(new TextMessage(frame));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}